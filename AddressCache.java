@@ -0,0 +1,174 @@
+/*
+ * AddressCache.java
+ * Fetches member addresses on demand instead of loading them at start-up.
+ * Lists, filters and reports never show the address, so members are loaded
+ * without it; when a screen (or an export) does need addresses they are read
+ * from the database in batches and kept in a bounded LRU cache.
+ */
+package HealthCentreMemberSystem;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AddressCache {
+
+    /** Addresses fetched per query. */
+    private static final int BATCH_SIZE = 500;
+
+    private final int maxEntries;
+    /** The database the addresses are read from. */
+    private final DBConnector db;
+    private final LinkedHashMap<String, String> entries;
+
+    private long hits;
+    private long misses;
+    private long fetched;
+
+    /**
+     * Constructor.
+     * @param maxEntries The maximum number of addresses kept before the least recently used is evicted.
+     * @param db         The database the addresses are read from.
+     */
+    public AddressCache(int maxEntries, DBConnector db) {
+        this.maxEntries = maxEntries;
+        this.db = db;
+        // Access order gives us LRU ordering for free
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > AddressCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns a member's address, fetching it if it is not cached.
+     * @return The address, or null if it could not be read.
+     */
+    public String get(String hcNumber) {
+        synchronized (this) {
+            String address = entries.get(hcNumber);
+            if (address != null) {
+                hits++;
+                return address;
+            }
+            misses++;
+        }
+        return fetch(Collections.singletonList(hcNumber)).get(hcNumber);
+    }
+
+    /**
+     * Makes sure the addresses of these members are cached, fetching the
+     * missing ones in batches. Call before showing or exporting many addresses.
+     */
+    public void prefetch(Collection<HCMember> members) {
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (HCMember m : members) {
+                if (!m.isAddressLoaded() && !entries.containsKey(m.getHCNumber())) {
+                    missing.add(m.getHCNumber());
+                }
+            }
+        }
+        for (int i = 0; i < missing.size(); i += BATCH_SIZE) {
+            fetch(missing.subList(i, Math.min(i + BATCH_SIZE, missing.size())));
+        }
+    }
+
+    /**
+     * Reads the addresses of these members in batches without caching them,
+     * for jobs that need far more addresses than the cache holds. Addresses
+     * already loaded on a member are taken from it.
+     * @return HC Number to address; members whose address could not be read are missing.
+     */
+    public Map<String, String> read(Collection<HCMember> members) {
+        Map<String, String> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (HCMember m : members) {
+            if (m.isAddressLoaded()) {
+                if (m.loadedAddress() != null) {
+                    found.put(m.getHCNumber(), m.loadedAddress());
+                }
+                continue;
+            }
+            String address;
+            synchronized (this) {
+                address = entries.get(m.getHCNumber());
+            }
+            if (address != null) {
+                found.put(m.getHCNumber(), address);
+            } else {
+                missing.add(m.getHCNumber());
+            }
+        }
+        for (int i = 0; i < missing.size(); i += BATCH_SIZE) {
+            found.putAll(fetch(missing.subList(i, Math.min(i + BATCH_SIZE, missing.size())), false));
+        }
+        return found;
+    }
+
+    /**
+     * Reads the addresses of a batch of members with one query and caches them.
+     */
+    private Map<String, String> fetch(List<String> hcNumbers) {
+        return fetch(hcNumbers, true);
+    }
+
+    private Map<String, String> fetch(List<String> hcNumbers, boolean cache) {
+        StringBuilder sql = new StringBuilder("SELECT HCNumber, Address FROM Members WHERE HCNumber IN (");
+        for (int i = 0; i < hcNumbers.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        Map<String, String> found = new HashMap<>();
+        try (Connection conn = db.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < hcNumbers.size(); i++) {
+                pstmt.setString(i + 1, hcNumbers.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    found.put(rs.getString("HCNumber"), rs.getString("Address"));
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading addresses: " + e.getMessage());
+        }
+
+        synchronized (this) {
+            if (cache) {
+                entries.putAll(found);
+            }
+            fetched += found.size();
+        }
+        return found;
+    }
+
+    /**
+     * Records an address that is already known (e.g. re-read during a merge).
+     */
+    public synchronized void put(String hcNumber, String address) {
+        if (address != null) {
+            entries.put(hcNumber, address);
+        }
+    }
+
+    // =========================================================================
+    // Stats
+    // =========================================================================
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getFetched() { return fetched; }
+    public synchronized int getSize() { return entries.size(); }
+}
\ No newline at end of file
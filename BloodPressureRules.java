@@ -0,0 +1,249 @@
+/*
+ * BloodPressureRules.java
+ * The blood pressure thresholds, loaded from a properties file instead of
+ * being built into the code, so a guideline change only needs a config edit.
+ *
+ * The rules are compiled into a decision table holding the category of every
+ * valid (systolic, diastolic) pair, so classifying a reading is one array
+ * lookup. Keys (defaults in brackets):
+ *   systolic.min (40)   systolic.max (180)   diastolic.min (40)   diastolic.max (120)
+ *   high.systolic.above (140)   high.diastolic.above (90)
+ *   low.systolic.below (90)     low.diastolic.below (60)
+ *
+ * The same file holds the limits HCMember validates the other member fields
+ * against:
+ *   age.min (18)   age.max (100)   weight.min (20.0)   weight.max (150.0)
+ *   name.minLength (2)   address.minLength (5)   address.maxLength (100)
+ */
+package HealthCentreMemberSystem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+public final class BloodPressureRules {
+
+    /** Category names, indexed by the codes stored in the decision table. */
+    private static final String[] CATEGORIES = {"Normal", "High", "Low"};
+    private static final byte NORMAL = 0;
+    private static final byte HIGH = 1;
+    private static final byte LOW = 2;
+
+    /** The rules in force. */
+    private static volatile BloodPressureRules current = loadConfigured();
+
+    private final int minSystolic;
+    private final int maxSystolic;
+    private final int minDiastolic;
+    private final int maxDiastolic;
+    private final int highSystolicAbove;
+    private final int highDiastolicAbove;
+    private final int lowSystolicBelow;
+    private final int lowDiastolicBelow;
+    private final int minAge;
+    private final int maxAge;
+    private final double minWeight;
+    private final double maxWeight;
+    private final int minNameLength;
+    private final int minAddressLength;
+    private final int maxAddressLength;
+    /** Category code of every valid reading, one row per systolic value. */
+    private final byte[] table;
+    private final int rowLength;
+
+    private BloodPressureRules(Properties p) {
+        this.minSystolic = intProperty(p, "systolic.min", 40);
+        this.maxSystolic = intProperty(p, "systolic.max", 180);
+        this.minDiastolic = intProperty(p, "diastolic.min", 40);
+        this.maxDiastolic = intProperty(p, "diastolic.max", 120);
+        this.highSystolicAbove = intProperty(p, "high.systolic.above", 140);
+        this.highDiastolicAbove = intProperty(p, "high.diastolic.above", 90);
+        this.lowSystolicBelow = intProperty(p, "low.systolic.below", 90);
+        this.lowDiastolicBelow = intProperty(p, "low.diastolic.below", 60);
+        if (minSystolic < 0 || minSystolic > maxSystolic || minDiastolic < 0 || minDiastolic > maxDiastolic) {
+            throw new IllegalArgumentException("Blood pressure reading ranges are empty or negative");
+        }
+        this.minAge = intProperty(p, "age.min", 18);
+        this.maxAge = intProperty(p, "age.max", 100);
+        this.minWeight = doubleProperty(p, "weight.min", 20.0);
+        this.maxWeight = doubleProperty(p, "weight.max", 150.0);
+        this.minNameLength = intProperty(p, "name.minLength", 2);
+        this.minAddressLength = intProperty(p, "address.minLength", 5);
+        this.maxAddressLength = intProperty(p, "address.maxLength", 100);
+        if (minAge < 0 || minAge > maxAge || minWeight < 0 || minWeight > maxWeight
+                || minNameLength < 0 || minAddressLength < 0 || minAddressLength > maxAddressLength) {
+            throw new IllegalArgumentException("Member field limits are empty or negative");
+        }
+
+        // Evaluate the rules once for every valid reading; High takes precedence over Low
+        rowLength = maxDiastolic - minDiastolic + 1;
+        table = new byte[(maxSystolic - minSystolic + 1) * rowLength];
+        for (int s = minSystolic; s <= maxSystolic; s++) {
+            for (int d = minDiastolic; d <= maxDiastolic; d++) {
+                byte category;
+                if (s > highSystolicAbove || d > highDiastolicAbove) {
+                    category = HIGH;
+                } else if (s < lowSystolicBelow || d < lowDiastolicBelow) {
+                    category = LOW;
+                } else {
+                    category = NORMAL;
+                }
+                table[(s - minSystolic) * rowLength + (d - minDiastolic)] = category;
+            }
+        }
+    }
+
+    private static int intProperty(Properties p, String key, int defaultValue) {
+        String value = p.getProperty(key);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+        }
+    }
+
+    private static double doubleProperty(Properties p, String key, double defaultValue) {
+        String value = p.getProperty(key);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+        }
+    }
+
+    // =========================================================================
+    // Loading
+    // =========================================================================
+
+    /**
+     * Builds rules from properties; missing keys take the default values.
+     * @throws IllegalArgumentException if a value is not a number or a range is empty.
+     */
+    public static BloodPressureRules fromProperties(Properties p) {
+        return new BloodPressureRules(p);
+    }
+
+    /**
+     * Reads rules from a properties file.
+     * @throws IOException if the file cannot be read.
+     */
+    public static BloodPressureRules load(Path file) throws IOException {
+        Properties p = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            p.load(reader);
+        }
+        return new BloodPressureRules(p);
+    }
+
+    /**
+     * Returns the path of the rules file (-Dhcms.bp.rules, default bp-rules.properties).
+     */
+    public static Path configuredFile() {
+        return Paths.get(System.getProperty("hcms.bp.rules", "bp-rules.properties"));
+    }
+
+    private static BloodPressureRules loadConfigured() {
+        Path file = configuredFile();
+        if (Files.exists(file)) {
+            try {
+                return load(file);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error loading blood pressure rules, using the defaults: " + e.getMessage());
+            }
+        }
+        return new BloodPressureRules(new Properties());
+    }
+
+    /** @return The rules in force. */
+    public static BloodPressureRules current() {
+        return current;
+    }
+
+    /**
+     * Puts new rules in force. Existing categories are not recomputed here;
+     * see MemberManager.reclassifyBloodPressure.
+     */
+    public static void setCurrent(BloodPressureRules rules) {
+        current = rules;
+    }
+
+    // =========================================================================
+    // Classification
+    // =========================================================================
+
+    /**
+     * Classifies a reading.
+     * @return "High", "Low" or "Normal", or null if the reading is out of range.
+     */
+    public String classify(int systolic, int diastolic) {
+        if (!isValidSystolic(systolic) || !isValidDiastolic(diastolic)) {
+            return null;
+        }
+        return CATEGORIES[table[(systolic - minSystolic) * rowLength + (diastolic - minDiastolic)]];
+    }
+
+    public boolean isValidSystolic(int systolic) {
+        return systolic >= minSystolic && systolic <= maxSystolic;
+    }
+
+    public boolean isValidDiastolic(int diastolic) {
+        return diastolic >= minDiastolic && diastolic <= maxDiastolic;
+    }
+
+    /**
+     * Parses a stored reading written as "systolic/diastolic".
+     * @return {systolic, diastolic}, or {0, 0} for no reading.
+     */
+    public static int[] parseReading(String value) {
+        if (value == null) return new int[] {0, 0};
+        int slash = value.indexOf('/');
+        return new int[] {Integer.parseInt(value.substring(0, slash)), Integer.parseInt(value.substring(slash + 1))};
+    }
+
+    // =========================================================================
+    // Getters
+    // =========================================================================
+
+    public int getMinSystolic() { return minSystolic; }
+    public int getMaxSystolic() { return maxSystolic; }
+    public int getMinDiastolic() { return minDiastolic; }
+    public int getMaxDiastolic() { return maxDiastolic; }
+    public int getMinAge() { return minAge; }
+    public int getMaxAge() { return maxAge; }
+    public double getMinWeight() { return minWeight; }
+    public double getMaxWeight() { return maxWeight; }
+    public int getMinNameLength() { return minNameLength; }
+    public int getMinAddressLength() { return minAddressLength; }
+    public int getMaxAddressLength() { return maxAddressLength; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BloodPressureRules)) return false;
+        BloodPressureRules r = (BloodPressureRules) o;
+        return minSystolic == r.minSystolic && maxSystolic == r.maxSystolic
+            && minDiastolic == r.minDiastolic && maxDiastolic == r.maxDiastolic
+            && highSystolicAbove == r.highSystolicAbove && highDiastolicAbove == r.highDiastolicAbove
+            && lowSystolicBelow == r.lowSystolicBelow && lowDiastolicBelow == r.lowDiastolicBelow
+            && minAge == r.minAge && maxAge == r.maxAge
+            && minWeight == r.minWeight && maxWeight == r.maxWeight
+            && minNameLength == r.minNameLength
+            && minAddressLength == r.minAddressLength && maxAddressLength == r.maxAddressLength;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((highSystolicAbove * 31 + highDiastolicAbove) * 31 + lowSystolicBelow) * 31 + lowDiastolicBelow;
+    }
+
+    @Override
+    public String toString() {
+        return "High: systolic > " + highSystolicAbove + " or diastolic > " + highDiastolicAbove
+            + ", Low: systolic < " + lowSystolicBelow + " or diastolic < " + lowDiastolicBelow
+            + ", valid " + minSystolic + "-" + maxSystolic + "/" + minDiastolic + "-" + maxDiastolic;
+    }
+}
\ No newline at end of file
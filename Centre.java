@@ -0,0 +1,111 @@
+/*
+ * Centre.java
+ * One health centre: its own database and its own range of HC Numbers.
+ * The centre is encoded in the HC Number, so any member can be routed to
+ * the centre that owns it without a lookup: centre c issues the numbers
+ * c * RANGE + 100001 up to (c + 1) * RANGE - 1. Centre 0 is the original
+ * database and keeps the numbers already issued (100001 onwards).
+ *
+ * The centres run together are listed with -Dhcms.centres (e.g. 0,1,2);
+ * each has its own database (see DBConnector) and local files.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Centre {
+
+    /** HC Numbers reserved for each centre. */
+    public static final int RANGE = 10_000_000;
+    /** Offset of a centre's first HC Number within its range. */
+    private static final int FIRST_OFFSET = 100001;
+
+    private final int code;
+    private final String name;
+    private final DBConnector db;
+
+    private Centre(int code, String name, DBConnector db) {
+        this.code = code;
+        this.name = name;
+        this.db = db;
+    }
+
+    /**
+     * Returns a centre by code, named by -Dhcms.centre.name.<code>.
+     * @throws IllegalArgumentException if the code is out of range or no database is configured for it.
+     */
+    public static Centre of(int code) {
+        if (code < 0 || code >= Integer.MAX_VALUE / RANGE) {
+            throw new IllegalArgumentException("Invalid centre code: " + code);
+        }
+        String name = System.getProperty("hcms.centre.name." + code, code == 0 ? "Main" : "Centre " + code);
+        return new Centre(code, name, DBConnector.forCentre(code));
+    }
+
+    /**
+     * Returns true if several centres are configured with -Dhcms.centres.
+     */
+    public static boolean isSharded() {
+        return System.getProperty("hcms.centres") != null;
+    }
+
+    /**
+     * Returns the centres listed in -Dhcms.centres, or just centre 0 if none are.
+     * @throws IllegalArgumentException if the list is malformed.
+     */
+    public static List<Centre> configured() {
+        List<Centre> centres = new ArrayList<>();
+        for (String code : System.getProperty("hcms.centres", "0").split(",")) {
+            if (code.isBlank()) continue;
+            try {
+                centres.add(of(Integer.parseInt(code.trim())));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid centre code in hcms.centres: " + code);
+            }
+        }
+        if (centres.isEmpty()) {
+            throw new IllegalArgumentException("hcms.centres lists no centres");
+        }
+        return centres;
+    }
+
+    /**
+     * Works out which centre issued an HC Number.
+     * @return The centre code, or -1 if the HC Number is not a number.
+     */
+    public static int codeOf(String hcNumber) {
+        try {
+            int n = Integer.parseInt(hcNumber.trim());
+            return n < 0 ? -1 : n / RANGE;
+        } catch (NumberFormatException | NullPointerException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns a file name local to this centre: the default name for centre 0,
+     * otherwise the name prefixed with the centre (e.g. centre2-hcms-outbox.log).
+     * Can be overridden with the property, suffixed by the code for other centres.
+     */
+    public String localFile(String property, String defaultName) {
+        if (code == 0) {
+            return System.getProperty(property, defaultName);
+        }
+        return System.getProperty(property + "." + code, "centre" + code + "-" + defaultName);
+    }
+
+    /** @return The first HC Number this centre issues. */
+    public int getFirstHcNumber() { return code * RANGE + FIRST_OFFSET; }
+    /** @return The last HC Number this centre can issue. */
+    public int getLastHcNumber() { return code * RANGE + RANGE - 1; }
+
+    public int getCode() { return code; }
+    public String getName() { return name; }
+    public DBConnector getDb() { return db; }
+
+    @Override
+    public String toString() {
+        return name + " (" + code + ")";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,189 @@
+/*
+ * ConsultationScheduler.java
+ * Expires free consultations on each member's own anniversary instead of
+ * resetting everyone at once.
+ *
+ * Members who have had their consultation sit in a queue ordered by the date
+ * their next one falls due. A background thread wakes up periodically, takes
+ * every member whose date has passed and hands them to the MemberManager to
+ * expire in small batches. Members currently due are kept in a sorted set,
+ * so the "due for consultation" report never has to scan everyone.
+ *
+ * In off-heap mode nothing is kept per member: each run asks for the
+ * members whose date has passed (read from the store's records) instead.
+ */
+package HealthCentreMemberSystem;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+public class ConsultationScheduler {
+
+    /** Orders HC Numbers as numbers: as text, "1000001" would come before "200000". */
+    private static final Comparator<String> BY_NUMBER = Comparator.comparingInt(hc -> Integer.parseInt(hc.trim()));
+
+    /** A member's consultation falling due on a given day. */
+    private static class DueDate implements Comparable<DueDate> {
+        final long epochDay;
+        final String hcNumber;
+
+        DueDate(long epochDay, String hcNumber) {
+            this.epochDay = epochDay;
+            this.hcNumber = hcNumber;
+        }
+
+        @Override
+        public int compareTo(DueDate other) {
+            int c = Long.compare(epochDay, other.epochDay);
+            return c != 0 ? c : BY_NUMBER.compare(hcNumber, other.hcNumber);
+        }
+    }
+
+    /** Upcoming due dates, earliest first. Entries may be stale; they are checked when expired. */
+    private final PriorityQueue<DueDate> queue = new PriorityQueue<>();
+    /** HC Numbers of the members whose consultation is currently due, in HC Number order. */
+    private final NavigableSet<String> due = new ConcurrentSkipListSet<>(BY_NUMBER);
+    /** Called with each batch of HC Numbers that have reached their due date, and today's date. */
+    private final BiConsumer<List<String>, LocalDate> expirer;
+    private final int batchSize;
+    /** Lists the members whose date has passed, instead of the queue (off-heap mode), or null. */
+    private final Function<LocalDate, List<String>> dueScan;
+    private ScheduledExecutorService timer;
+
+    /**
+     * Constructor.
+     * @param expirer   Expires the consultations of a batch of members.
+     * @param batchSize Most members handed to the expirer at once.
+     */
+    public ConsultationScheduler(BiConsumer<List<String>, LocalDate> expirer, int batchSize) {
+        this(expirer, batchSize, null);
+    }
+
+    /**
+     * Constructor for a scheduler that tracks nothing itself.
+     * @param dueScan Lists the HC Numbers of the members whose consultation has fallen due by a date.
+     */
+    public ConsultationScheduler(BiConsumer<List<String>, LocalDate> expirer, int batchSize,
+                                 Function<LocalDate, List<String>> dueScan) {
+        this.expirer = expirer;
+        this.batchSize = batchSize;
+        this.dueScan = dueScan;
+    }
+
+    /**
+     * Records a member's current consultation state.
+     * Call whenever the consultation flag or due date changes.
+     */
+    public void track(HCMember m) {
+        if (dueScan != null) return;
+        if (!m.isFConsultation()) {
+            due.add(m.getHCNumber());
+            return;
+        }
+        due.remove(m.getHCNumber());
+        if (m.getConsultationDue() != null) {
+            synchronized (queue) {
+                queue.add(new DueDate(m.getConsultationDue().toEpochDay(), m.getHCNumber()));
+            }
+        }
+    }
+
+    /**
+     * Expires every consultation whose due date has arrived, a batch at a time.
+     * @param today The current date.
+     * @return The number of members handed over to be expired.
+     */
+    public int runOnce(LocalDate today) {
+        if (dueScan != null) {
+            // One scan finds them all, so hand every batch over now
+            List<String> found = dueScan.apply(today);
+            for (int i = 0; i < found.size(); i += batchSize) {
+                expirer.accept(found.subList(i, Math.min(i + batchSize, found.size())), today);
+            }
+            return found.size();
+        }
+        int total = 0;
+        while (true) {
+            List<String> batch = new ArrayList<>();
+            synchronized (queue) {
+                while (batch.size() < batchSize && !queue.isEmpty() && queue.peek().epochDay <= today.toEpochDay()) {
+                    batch.add(queue.poll().hcNumber);
+                }
+            }
+            if (batch.isEmpty()) return total;
+            // The queue is not held while a batch is expired, so desks can keep booking
+            expirer.accept(batch, today);
+            total += batch.size();
+        }
+    }
+
+    /**
+     * Starts expiring consultations in the background.
+     * @param intervalSeconds Time between batches.
+     */
+    public synchronized void start(long intervalSeconds) {
+        if (timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "consultation-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce(LocalDate.now());
+            } catch (RuntimeException e) {
+                System.out.println("Error expiring consultations: " + e.getMessage());
+            }
+        }, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    public synchronized void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * Returns the HC Numbers of the members currently due, in HC Number order
+     * (always empty when the scheduler tracks nothing itself).
+     */
+    public NavigableSet<String> getDue() {
+        return Collections.unmodifiableNavigableSet(due);
+    }
+
+    /** @return Due dates still waiting in the queue (including stale ones). */
+    public int getQueued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Works out when a member's consultation next falls due if no date has
+     * been stored yet: an anniversary date spread across the year by HC Number,
+     * so existing members do not all fall due on the same day.
+     * @param hcNumber The member's HC Number.
+     * @param today    The current date.
+     * @return The next such anniversary after today.
+     */
+    public static LocalDate anniversaryAfter(String hcNumber, LocalDate today) {
+        int dayOfYear = Math.floorMod(hcNumber.hashCode(), 365) + 1;
+        LocalDate date = today.withDayOfYear(dayOfYear);
+        return date.isAfter(today) ? date : date.plusYears(1);
+    }
+}
\ No newline at end of file
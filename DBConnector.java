@@ -3,21 +3,132 @@ package HealthCentreMemberSystem;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/*
+ * DBConnector.java
+ * Hands out connections to one centre's database. Writes always go to the
+ * primary database; bulk reads (loading, reports) can be sent to a read
+ * replica instead with -Dhcms.db.replicaUrl. Straight after this desk writes,
+ * reads stay on the primary for a short window so a lagging replica never
+ * hides that write.
+ *
+ * The unsuffixed hcms.db.* properties configure centre 0 (the original
+ * database). Every other centre has its own, suffixed with the centre code
+ * (e.g. -Dhcms.db.url.2=...); its user and password default to centre 0's.
+ */
 public class DBConnector {
 
-    private static final String URL = "jdbc:sqlserver://localhost:1433;databaseName=HealthCentreDB;encrypt=true;trustServerCertificate=true;";
+    private static final String DEFAULT_URL =
+        "jdbc:sqlserver://localhost:1433;databaseName=HealthCentreDB;encrypt=true;trustServerCertificate=true;";
+
+    /** How long reads stay on the primary after a write (read-your-writes). */
+    private static final long READ_YOUR_WRITES_NANOS =
+        Long.getLong("hcms.db.readYourWritesMs", 5000) * 1_000_000L;
+
+    private static final LongAdder REPLICA_READS = Metrics.counter("db.reads.replica");
+    private static final LongAdder PRIMARY_READS = Metrics.counter("db.reads.primary");
+
+    /** One connector per centre code, created when first asked for. */
+    private static final Map<Integer, DBConnector> CENTRES = new ConcurrentHashMap<>();
+
+    private final String url;
     // Credentials for SQL Authentication
-    private static final String USER = "sa";
-    private static final String PASSWORD = "password123"; 
+    private final String user;
+    private final String password;
+
+    /** Read replica (null sends reads to the primary). Credentials default to the primary's. */
+    private final String replicaUrl;
+    private final String replicaUser;
+    private final String replicaPassword;
+
+    /** When this desk last wrote (System.nanoTime), or 0 if it has not. */
+    private volatile long lastWriteNanos;
+
+    private DBConnector(int centre) {
+        String suffix = centre == 0 ? "" : "." + centre;
+        String configuredUrl = System.getProperty("hcms.db.url" + suffix);
+        if (configuredUrl == null && centre != 0) {
+            throw new IllegalArgumentException("No database configured for centre " + centre
+                + " (set -Dhcms.db.url." + centre + ")");
+        }
+        this.url = configuredUrl != null ? configuredUrl : DEFAULT_URL;
+        this.user = System.getProperty("hcms.db.user" + suffix, System.getProperty("hcms.db.user", "sa"));
+        this.password = System.getProperty("hcms.db.password" + suffix, System.getProperty("hcms.db.password", "password123"));
+        this.replicaUrl = System.getProperty("hcms.db.replicaUrl" + suffix);
+        this.replicaUser = System.getProperty("hcms.db.replicaUser" + suffix, user);
+        this.replicaPassword = System.getProperty("hcms.db.replicaPassword" + suffix, password);
+    }
 
     /**
-     * Establishes and returns a connection to the database.
-     * @return 
+     * Returns the connector for a centre's database.
+     * @throws IllegalArgumentException if no database is configured for the centre.
+     */
+    public static DBConnector forCentre(int centre) {
+        return CENTRES.computeIfAbsent(centre, DBConnector::new);
+    }
+
+    /**
+     * Establishes and returns a connection to the primary database.
+     * Use this for anything that writes.
+     * @return
      * @throws java.sql.SQLException
      */
-    public static Connection getConnection() throws SQLException {
+    public Connection getConnection() throws SQLException {
+        long start = Metrics.start();
         // Use the DriverManager method that accepts URL, Username, and Password
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        Connection conn = DriverManager.getConnection(url, user, password);
+        Metrics.DB_CONNECT.recordSince(start);
+        return conn;
+    }
+
+    /**
+     * Returns a connection for reading. This is the replica, unless none is
+     * configured, this desk wrote within the read-your-writes window, or the
+     * replica cannot be reached; then it is the primary.
+     * @throws java.sql.SQLException if no database can be reached.
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (replicaUrl == null || wroteRecently()) {
+            Metrics.increment(PRIMARY_READS);
+            return getConnection();
+        }
+        long start = Metrics.start();
+        try {
+            Connection conn = DriverManager.getConnection(replicaUrl, replicaUser, replicaPassword);
+            Metrics.DB_CONNECT.recordSince(start);
+            Metrics.increment(REPLICA_READS);
+            return conn;
+        } catch (SQLException e) {
+            System.out.println("Error connecting to read replica, reading from the primary: " + e.getMessage());
+            Metrics.increment(PRIMARY_READS);
+            return getConnection();
+        }
+    }
+
+    /**
+     * Returns the SQL dialect of the primary database.
+     */
+    public SqlDialect getDialect() {
+        return SqlDialect.of(url);
+    }
+
+    /**
+     * Records that this desk has just written to the primary.
+     * Call after every committed write.
+     */
+    public void recordWrite() {
+        lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns true if this desk wrote within the read-your-writes window,
+     * so reads should go to the primary.
+     */
+    public boolean wroteRecently() {
+        long last = lastWriteNanos;
+        return last != 0 && System.nanoTime() - last < READ_YOUR_WRITES_NANOS;
     }
 }
\ No newline at end of file
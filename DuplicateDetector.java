@@ -0,0 +1,391 @@
+/*
+ * DuplicateDetector.java
+ * Finds members enrolled more than once (the same person under a new HC
+ * Number, with a slightly different spelling or address).
+ *
+ * Comparing every pair of members is far too slow for a large centre, so
+ * only likely pairs are compared:
+ *   - Blocking: members are grouped by a key of a phonetic (Soundex) code,
+ *     gender and ten-year age band, and only members with the same key are
+ *     compared.
+ *   - Sorted neighbourhood: within a block, members are sorted by name and
+ *     each is compared only with the next few (-Dhcms.dedup.window).
+ * Two passes are made: one keyed on the surname code, one on the forename
+ * code with the age bands shifted by five years, so a misspelt surname or an
+ * age near a band edge does not hide a pair from both.
+ *
+ * Candidate pairs are scored in parallel with Jaro-Winkler similarity of
+ * forename, surname and address (weighted); those at or above the threshold
+ * (-Dhcms.dedup.threshold) are returned as ranked merge suggestions.
+ * Addresses are fetched only for pairs whose names already score high enough,
+ * straight into the job rather than through the (much smaller) address cache.
+ * A missing address is no evidence either way, so it scores 0.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+public class DuplicateDetector {
+
+    /** Weights of the field similarities in a pair's score (they add up to 1). */
+    static final double FORENAME_WEIGHT = 0.3;
+    static final double SURNAME_WEIGHT = 0.35;
+    static final double ADDRESS_WEIGHT = 0.35;
+
+    /** Width of an age band in years. */
+    private static final int AGE_BAND = 10;
+
+    /** Pairs scoring at least this are suggested (0-1). */
+    private final double threshold;
+    /** How many sorted neighbours each member is compared with. */
+    private final int window;
+
+    /**
+     * Constructor.
+     * @param threshold Lowest score of a suggested pair (0-1).
+     * @param window    Members in the sliding window (at least 2).
+     */
+    public DuplicateDetector(double threshold, int window) {
+        this.threshold = threshold;
+        this.window = Math.max(2, window);
+    }
+
+    /**
+     * Returns a detector set up from -Dhcms.dedup.threshold (default 0.9)
+     * and -Dhcms.dedup.window (default 8).
+     */
+    public static DuplicateDetector configured() {
+        double threshold = 0.9;
+        try {
+            threshold = Double.parseDouble(System.getProperty("hcms.dedup.threshold", "0.9"));
+        } catch (NumberFormatException e) {
+            System.out.println("Error reading hcms.dedup.threshold, using 0.9: " + e.getMessage());
+        }
+        return new DuplicateDetector(threshold, Integer.getInteger("hcms.dedup.window", 8));
+    }
+
+    // =========================================================================
+    // Deduplication Job
+    // =========================================================================
+
+    /**
+     * Finds likely duplicate enrolments among the members.
+     * @param members       The members to check (not changed).
+     * @param addressReader Reads the addresses of a batch of members (HC Number to address).
+     * @return The suggestions, highest score first.
+     */
+    public List<MergeSuggestion> findDuplicates(List<HCMember> members,
+                                                Function<List<HCMember>, Map<String, String>> addressReader) {
+        HCMember[] all = members.toArray(new HCMember[0]);
+        Person[] people = IntStream.range(0, all.length).parallel()
+            .mapToObj(i -> new Person(i, all[i]))
+            .toArray(Person[]::new);
+
+        // Pairs from both passes whose names could still reach the threshold
+        long[] pairs = LongStream.concat(candidatePairs(people, 0), candidatePairs(people, 1))
+            .distinct()
+            .toArray();
+
+        // Fetch the addresses of those members in one go, then score the pairs in full
+        long[] involved = Arrays.stream(pairs)
+            .flatMap(p -> LongStream.of(p >>> 32, (int) p))
+            .distinct()
+            .toArray();
+        List<HCMember> toLoad = new ArrayList<>(involved.length);
+        for (long i : involved) {
+            toLoad.add(all[(int) i]);
+        }
+        Map<String, String> addresses = addressReader.apply(toLoad);
+        for (long i : involved) {
+            people[(int) i].address = normaliseAddress(addresses.get(all[(int) i].getHCNumber()));
+        }
+
+        return Arrays.stream(pairs).parallel()
+            .mapToObj(p -> score(people[(int) (p >>> 32)], people[(int) p]))
+            .filter(s -> s != null)
+            .sorted(MergeSuggestion::byRank)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * One sorted-neighbourhood pass: sorts the members by block key then name
+     * and pairs each with the following window - 1 members of the same block.
+     * @param pass 0 blocks on the surname code, 1 on the forename code.
+     * @return Pairs of indexes (lower in the high half) whose names score high enough.
+     */
+    private LongStream candidatePairs(Person[] people, int pass) {
+        Person[] sorted = people.clone();
+        Arrays.parallelSort(sorted, Comparator.comparing((Person p) -> p.blocks[pass]).thenComparing(p -> p.sortNames[pass]));
+        return IntStream.range(0, sorted.length).parallel().mapToObj(i -> {
+            LongStream.Builder found = LongStream.builder();
+            Person a = sorted[i];
+            for (int j = i + 1; j < sorted.length && j < i + window; j++) {
+                Person b = sorted[j];
+                if (!b.blocks[pass].equals(a.blocks[pass])) break;
+                if (namesCouldMatch(a, b)) {
+                    found.add(a.index < b.index ? (long) a.index << 32 | b.index : (long) b.index << 32 | a.index);
+                }
+            }
+            return found.build();
+        }).flatMapToLong(found -> found);
+    }
+
+    // =========================================================================
+    // Check on Insert
+    // =========================================================================
+
+    /**
+     * Compares one member with possible matches (e.g. the members sharing
+     * its surname code and gender), reading in one batch the addresses of
+     * those whose names match.
+     * @param addressReader Reads the addresses of a batch of members (HC Number to address).
+     * @return The suggestions for this member, highest score first.
+     */
+    public List<MergeSuggestion> matchesFor(HCMember member, Collection<HCMember> candidates,
+                                            Function<List<HCMember>, Map<String, String>> addressReader) {
+        Person p = new Person(-1, member);
+        List<Person> alike = new ArrayList<>();
+        for (HCMember c : candidates) {
+            if (c.getHCNumber().equals(member.getHCNumber())) continue;
+            Person q = new Person(-1, c);
+            if (sameBlock(p, q) && namesCouldMatch(p, q)) {
+                alike.add(q);
+            }
+        }
+        if (alike.isEmpty()) return new ArrayList<>();
+
+        List<HCMember> toRead = new ArrayList<>(alike.size() + 1);
+        toRead.add(member);
+        for (Person q : alike) {
+            toRead.add(q.member);
+        }
+        Map<String, String> addresses = addressReader.apply(toRead);
+        p.address = normaliseAddress(addresses.get(member.getHCNumber()));
+        List<MergeSuggestion> found = new ArrayList<>();
+        for (Person q : alike) {
+            q.address = normaliseAddress(addresses.get(q.member.getHCNumber()));
+            MergeSuggestion s = score(p, q);
+            if (s != null) {
+                found.add(s);
+            }
+        }
+        found.sort(MergeSuggestion::byRank);
+        return found;
+    }
+
+    /**
+     * Returns the key the insert check groups members by: surname code and gender.
+     */
+    static String insertKey(HCMember m) {
+        return soundex(normaliseName(m.getSurname())) + m.getGender();
+    }
+
+    /**
+     * Returns true if two people share an age band in either pass, so the job could pair them.
+     */
+    private static boolean sameBlock(Person a, Person b) {
+        return a.gender == b.gender
+            && (a.age / AGE_BAND == b.age / AGE_BAND || (a.age + AGE_BAND / 2) / AGE_BAND == (b.age + AGE_BAND / 2) / AGE_BAND);
+    }
+
+    // =========================================================================
+    // Scoring
+    // =========================================================================
+
+    /**
+     * Returns true if two people's names are alike enough for the pair to
+     * reach the threshold with a matching address.
+     */
+    private boolean namesCouldMatch(Person a, Person b) {
+        double surname = SURNAME_WEIGHT * jaroWinkler(a.surname, b.surname);
+        // Not even an exact forename would make up for the surname
+        if (surname + FORENAME_WEIGHT + ADDRESS_WEIGHT < threshold) return false;
+        return surname + FORENAME_WEIGHT * jaroWinkler(a.forename, b.forename) + ADDRESS_WEIGHT >= threshold;
+    }
+
+    /**
+     * Scores a pair in full.
+     * @return The suggestion, or null if the pair scores below the threshold.
+     */
+    private MergeSuggestion score(Person a, Person b) {
+        double forename = jaroWinkler(a.forename, b.forename);
+        double surname = jaroWinkler(a.surname, b.surname);
+        double names = FORENAME_WEIGHT * forename + SURNAME_WEIGHT * surname;
+        if (names + ADDRESS_WEIGHT < threshold) return null;
+        double address = jaroWinkler(a.address, b.address);
+        double total = names + ADDRESS_WEIGHT * address;
+        if (total < threshold) return null;
+        return new MergeSuggestion(a.member.getHCNumber(), b.member.getHCNumber(), total, forename, surname, address);
+    }
+
+    /**
+     * Jaro-Winkler similarity of two strings: 1 for equal strings, 0 for
+     * nothing in common, with a bonus for a shared prefix of up to four characters.
+     * An empty string (a missing name or address) has nothing in common with anything.
+     */
+    static double jaroWinkler(String s, String t) {
+        int sLen = s.length();
+        int tLen = t.length();
+        if (sLen == 0 || tLen == 0) return 0.0;
+        if (s.equals(t)) return 1.0;
+
+        int range = Math.max(0, Math.max(sLen, tLen) / 2 - 1);
+        boolean[] sMatched = new boolean[sLen];
+        boolean[] tMatched = new boolean[tLen];
+        int matches = 0;
+        for (int i = 0; i < sLen; i++) {
+            int from = Math.max(0, i - range);
+            int to = Math.min(tLen - 1, i + range);
+            for (int j = from; j <= to; j++) {
+                if (!tMatched[j] && s.charAt(i) == t.charAt(j)) {
+                    sMatched[i] = true;
+                    tMatched[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) return 0.0;
+
+        // Matched characters out of order, counted in pairs
+        int transpositions = 0;
+        for (int i = 0, j = 0; i < sLen; i++) {
+            if (!sMatched[i]) continue;
+            while (!tMatched[j]) j++;
+            if (s.charAt(i) != t.charAt(j)) transpositions++;
+            j++;
+        }
+        double m = matches;
+        double jaro = (m / sLen + m / tLen + (m - transpositions / 2.0) / m) / 3.0;
+
+        int prefix = 0;
+        while (prefix < 4 && prefix < sLen && prefix < tLen && s.charAt(prefix) == t.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * 0.1 * (1.0 - jaro);
+    }
+
+    // =========================================================================
+    // Keys and Normalisation
+    // =========================================================================
+
+    /**
+     * Returns the American Soundex code of a name (a letter and three digits),
+     * so names that sound alike (Smith, Smyth) share a code.
+     * @param name A normalised name (lower case letters only).
+     */
+    static String soundex(String name) {
+        if (name.isEmpty()) return "0000";
+        char[] code = {Character.toUpperCase(name.charAt(0)), '0', '0', '0'};
+        int length = 1;
+        char last = soundexDigit(name.charAt(0));
+        for (int i = 1; i < name.length() && length < 4; i++) {
+            char c = name.charAt(i);
+            char digit = soundexDigit(c);
+            if (digit != '0' && digit != last) {
+                code[length++] = digit;
+            }
+            // H and W do not separate letters with the same code; vowels do
+            if (c != 'h' && c != 'w') {
+                last = digit;
+            }
+        }
+        return new String(code);
+    }
+
+    private static char soundexDigit(char c) {
+        switch (c) {
+            case 'b': case 'f': case 'p': case 'v': return '1';
+            case 'c': case 'g': case 'j': case 'k': case 'q': case 's': case 'x': case 'z': return '2';
+            case 'd': case 't': return '3';
+            case 'l': return '4';
+            case 'm': case 'n': return '5';
+            case 'r': return '6';
+            default: return '0';
+        }
+    }
+
+    /**
+     * Lower-cases a name and drops everything but letters (O'Neil, O Neil and oneil compare equal).
+     */
+    static String normaliseName(String name) {
+        if (name == null) return "";
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = Character.toLowerCase(name.charAt(i));
+            if (c >= 'a' && c <= 'z') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Lower-cases an address, drops punctuation and spells out common
+     * abbreviations (St, Rd, Ave...), so "12 High St." matches "12 high street".
+     */
+    static String normaliseAddress(String address) {
+        if (address == null) return "";
+        String[] words = address.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9 ]", " ").trim().split("\\s+");
+        StringBuilder sb = new StringBuilder(address.length() + 8);
+        for (String w : words) {
+            if (w.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(switch (w) {
+                case "st" -> "street";
+                case "rd" -> "road";
+                case "ave", "av" -> "avenue";
+                case "dr" -> "drive";
+                case "ln" -> "lane";
+                case "cres" -> "crescent";
+                case "ct" -> "court";
+                case "pl" -> "place";
+                case "sq" -> "square";
+                default -> w;
+            });
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A member's normalised names and blocking keys, worked out once per job.
+     */
+    private static class Person {
+        final int index;
+        final HCMember member;
+        final String forename;
+        final String surname;
+        final char gender;
+        final int age;
+        /** Block key of each pass: surname code or forename code, gender and age band. */
+        final String[] blocks;
+        /** Sort order within the block of each pass. */
+        final String[] sortNames;
+        /** Normalised address ("" if unknown), read in a batch before the pair is scored. */
+        private String address = "";
+
+        Person(int index, HCMember m) {
+            this.index = index;
+            this.member = m;
+            this.forename = normaliseName(m.getForename());
+            this.surname = normaliseName(m.getSurname());
+            this.gender = m.getGender();
+            this.age = m.getAge();
+            this.blocks = new String[] {
+                soundex(surname) + gender + age / AGE_BAND,
+                soundex(forename) + gender + (age + AGE_BAND / 2) / AGE_BAND
+            };
+            this.sortNames = new String[] {surname + ' ' + forename, forename + ' ' + surname};
+        }
+    }
+}
\ No newline at end of file
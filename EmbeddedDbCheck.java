@@ -0,0 +1,701 @@
+/*
+ * EmbeddedDbCheck.java
+ * Runs the database paths that need a real database against embedded ones
+ * and reports PASS or FAIL for each: read replica routing (read-your-writes
+ * window, falling back to the primary, start-up reading the primary), the
+ * pushdown queries that page through reports in the configured SQL dialect
+ * (and show the desk's writes not saved yet), the outbox journal's crash
+ * recovery and group commit, the optimistic merge of two desks' writes
+ * and, when several centres are configured, routing and
+ * scatter-gather across the centres' databases.
+ *
+ * Usage, with the H2 driver on the classpath (any JDBC URL will do):
+ * java -cp .:h2.jar -Dhcms.db.url="jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1"
+ *      -Dhcms.db.replicaUrl="jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1"
+ *      -Dhcms.db.readYourWritesMs=500 HealthCentreMemberSystem.EmbeddedDbCheck
+ * adding, for the centre checks:
+ *      -Dhcms.centres=0,1 -Dhcms.db.url.1="jdbc:h2:mem:centre1;DB_CLOSE_DELAY=-1"
+ * The check creates the tables and fills them with generated members, so it
+ * refuses to run against a database that already holds members.
+ */
+package HealthCentreMemberSystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EmbeddedDbCheck {
+
+    /** The tables the system needs, in types every embedded database accepts. */
+    private static final String[] TABLES = {
+        "CREATE TABLE Members (HCNumber VARCHAR(20) PRIMARY KEY, Forename VARCHAR(50), Surname VARCHAR(50), "
+            + "Gender CHAR(1), Age INT, Weight FLOAT, Address VARCHAR(100), BloodPressure VARCHAR(20), "
+            + "VisitTally INT, FConsultation BOOLEAN, Version BIGINT DEFAULT 0 NOT NULL, ConsultationDue DATE, "
+            + "Systolic INT, Diastolic INT)",
+        "CREATE TABLE OutboxCheckpoint (Journal CHAR(36) PRIMARY KEY, Seq BIGINT NOT NULL)"
+    };
+
+    /** Members generated per centre: enough for several report pages. */
+    private static final int MEMBERS = 450;
+    /**
+     * The last member generated is moved this far past the centre's first HC
+     * Number, and made female. In centre 0 that gives it a digit more than the
+     * others (1000001 after 100450), so sorting the numbers as text would put
+     * it first in the reports instead of last.
+     */
+    private static final int LONGER_NUMBER_OFFSET = 900_000;
+
+    private int passed;
+    private int failed;
+
+    // =========================================================================
+    // Setup
+    // =========================================================================
+
+    /**
+     * Creates the tables unless they exist.
+     * @throws IllegalStateException if the database already holds members.
+     */
+    private static void createTables(Connection conn) throws SQLException {
+        for (String sql : TABLES) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(sql);
+            } catch (SQLException e) {
+                // Already there; checked for members below
+            }
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Members")) {
+            if (rs.next() && rs.getInt(1) > 0) {
+                throw new IllegalStateException("the database at " + conn.getMetaData().getURL()
+                    + " already holds members; point the check at an empty one");
+            }
+        }
+    }
+
+    /**
+     * Copies every member row, as replication would.
+     */
+    private static void copyMembers(Connection from, Connection to) throws SQLException {
+        try (Statement stmt = from.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM Members")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            StringBuilder sql = new StringBuilder("INSERT INTO Members VALUES (");
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                sql.append(i == 1 ? "?" : ", ?");
+            }
+            sql.append(")");
+            try (PreparedStatement insert = to.prepareStatement(sql.toString())) {
+                while (rs.next()) {
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        insert.setObject(i, rs.getObject(i));
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    /** @return The highest HC Number generated for a centre (see LONGER_NUMBER_OFFSET). */
+    private static int highestOf(Centre centre) {
+        return centre.getFirstHcNumber() + LONGER_NUMBER_OFFSET;
+    }
+
+    /**
+     * Moves the last generated member to the centre's highest (and, in
+     * centre 0, longer) HC Number.
+     */
+    private static void renumberLast(Connection conn, Centre centre) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE Members SET HCNumber = ?, Gender = 'F' WHERE HCNumber = ?")) {
+            pstmt.setString(1, String.valueOf(highestOf(centre)));
+            pstmt.setString(2, String.valueOf(centre.getFirstHcNumber() + MEMBERS - 1));
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static Connection connectReplica() throws SQLException {
+        String user = System.getProperty("hcms.db.user", "sa");
+        return DriverManager.getConnection(System.getProperty("hcms.db.replicaUrl"),
+            System.getProperty("hcms.db.replicaUser", user),
+            System.getProperty("hcms.db.replicaPassword", System.getProperty("hcms.db.password", "password123")));
+    }
+
+    private static String forenameOf(Connection conn, String hcNumber) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT Forename FROM Members WHERE HCNumber = ?")) {
+            pstmt.setString(1, hcNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static int visitsOf(Connection conn, String hcNumber) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT VisitTally FROM Members WHERE HCNumber = ?")) {
+            pstmt.setString(1, hcNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    private static int count(Connection conn, String where) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Members WHERE " + where)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Outbox handler for the journal checks: applies VISITS entries, the
+     * writes that must never be applied twice.
+     */
+    private static Runnable addVisits(Connection conn, OutboxEntry entry) throws SQLException {
+        String[] v = entry.getValues();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE Members SET VisitTally = VisitTally + ? WHERE HCNumber = ?")) {
+            pstmt.setInt(1, Integer.parseInt(v[2]));
+            pstmt.setString(2, v[0]);
+            pstmt.executeUpdate();
+        }
+        return null;
+    }
+
+    private static OutboxEntry visitTo(String hcNumber) {
+        return new OutboxEntry(OutboxEntry.UPDATE, hcNumber, MemberField.VISITS.name(), "1", "0");
+    }
+
+    /**
+     * Writes visits to a new journal and closes it before anything is drained.
+     */
+    private static Path journalOf(Centre centre, String hcNumber, int visits) throws IOException {
+        Path file = Files.createTempFile("hcms-check-journal", ".log");
+        PersistenceOutbox outbox = new PersistenceOutbox(file, centre.getDb(), EmbeddedDbCheck::addVisits);
+        for (int i = 0; i < visits; i++) {
+            outbox.submit(visitTo(hcNumber));
+        }
+        outbox.close(0);
+        return file;
+    }
+
+    /**
+     * Reopens a journal as a restarted desk would and drains it.
+     * @return The entries it found still to be saved.
+     */
+    private static int replay(Centre centre, Path file) throws IOException {
+        PersistenceOutbox outbox = new PersistenceOutbox(file, centre.getDb(), EmbeddedDbCheck::addVisits);
+        outbox.skipSaved();
+        int unsaved = outbox.getDepth();
+        outbox.start();
+        outbox.close(10_000);
+        return unsaved;
+    }
+
+    private void check(String name, boolean ok, String detail) {
+        if (ok) {
+            passed++;
+            System.out.println("PASS " + name);
+        } else {
+            failed++;
+            System.out.println("FAIL " + name + ": " + detail);
+        }
+    }
+
+    // =========================================================================
+    // Checks
+    // =========================================================================
+
+    /**
+     * Checks that reads go to the replica, except straight after a write,
+     * and fall back to the primary when the replica cannot be reached.
+     */
+    private void checkReplicaRouting(Centre centre) throws SQLException, InterruptedException {
+        DBConnector db = centre.getDb();
+        String hc = String.valueOf(centre.getFirstHcNumber());
+        String copied;
+        try (Connection conn = db.getConnection()) {
+            copied = forenameOf(conn, hc);
+            // A write the replica has not caught up with yet
+            try (PreparedStatement pstmt = conn.prepareStatement("UPDATE Members SET Forename = ? WHERE HCNumber = ?")) {
+                pstmt.setString(1, "Written");
+                pstmt.setString(2, hc);
+                pstmt.executeUpdate();
+            }
+            db.recordWrite();
+        }
+
+        try (Connection conn = db.getReadConnection()) {
+            String seen = forenameOf(conn, hc);
+            check("reads after a write go to the primary", "Written".equals(seen), "read " + seen);
+        }
+        Thread.sleep(Long.getLong("hcms.db.readYourWritesMs", 5000) + 100);
+        try (Connection conn = db.getReadConnection()) {
+            String seen = forenameOf(conn, hc);
+            check("other reads go to the replica", copied != null && copied.equals(seen), "read " + seen);
+        }
+
+        // A centre whose replica is down reads from its primary
+        int code = Integer.MAX_VALUE / Centre.RANGE - 1;
+        System.setProperty("hcms.db.url." + code, System.getProperty("hcms.db.url"));
+        System.setProperty("hcms.db.replicaUrl." + code, "jdbc:hcms-unreachable:replica");
+        try (Connection conn = DBConnector.forCentre(code).getReadConnection()) {
+            String seen = forenameOf(conn, hc);
+            check("reads fall back to the primary if the replica is down", "Written".equals(seen), "read " + seen);
+        }
+    }
+
+    /**
+     * Checks the pushdown queries, which page in the database's dialect,
+     * against plain counts.
+     */
+    private void checkPushdownQueries(Centre centre) throws SQLException {
+        SqlMemberQueries queries = new SqlMemberQueries((m, field) -> { }, centre.getDb());
+        try (Connection conn = centre.getDb().getReadConnection()) {
+            check("count", queries.count() == MEMBERS, "counted " + queries.count());
+
+            List<HCMember> women = queries.byGender('F');
+            int expected = count(conn, "Gender = 'F'");
+            int read = 0;
+            String last = "";
+            long lastNumber = -1;
+            boolean ordered = true;
+            for (Iterator<HCMember> it = women.iterator(); it.hasNext(); read++) {
+                String hc = it.next().getHCNumber();
+                ordered &= Long.parseLong(hc) > lastNumber;
+                lastNumber = Long.parseLong(hc);
+                last = hc;
+            }
+            check("report pages read in order", ordered && read == expected && women.size() == expected,
+                "read " + read + " of " + expected + (ordered ? "" : ", out of order"));
+            int index = expected - 1;
+            check("report page read by position", index < 0 || women.get(index).getHCNumber().equals(last),
+                "element " + index + " differs from the last one iterated");
+
+            List<HCMember> top = queries.top(RankField.VISITS, 5);
+            boolean ranked = top.size() == Math.min(5, MEMBERS);
+            for (int i = 1; i < top.size(); i++) {
+                ranked &= top.get(i - 1).getVisitTally() >= top.get(i).getVisitTally();
+            }
+            check("top members", ranked, top.size() + " members returned");
+
+            int max = queries.maxHcNumber();
+            check("highest HC Number", max == highestOf(centre), "read " + max);
+        } finally {
+            queries.close();
+        }
+    }
+
+    /**
+     * Checks that start-up and the next free HC Number read the primary even
+     * when a replica is configured: here the replica still has the forename
+     * checkReplicaRouting overwrote, and lacks the newest member.
+     */
+    private void checkStartupReadsPrimary(Centre centre) throws SQLException, IOException {
+        String hc = String.valueOf(centre.getFirstHcNumber());
+        String newest = String.valueOf(highestOf(centre));
+        try (Connection replica = connectReplica();
+             PreparedStatement pstmt = replica.prepareStatement("DELETE FROM Members WHERE HCNumber = ?")) {
+            pstmt.setString(1, newest);
+            pstmt.executeUpdate();
+        }
+
+        if (System.getProperty("hcms.outbox.file") == null) {
+            System.setProperty("hcms.outbox.file", Files.createTempFile("hcms-check-outbox", ".log").toString());
+        }
+        MemberManager desk = new MemberManager(centre);
+        try {
+            HCMember m = desk.findMemberByHCNumber(hc);
+            check("start-up loads from the primary", m != null && "Written".equals(m.getForename()),
+                "read " + (m != null ? m.getForename() : null));
+            check("start-up sees members the replica lacks", desk.findMemberByHCNumber(newest) != null,
+                newest + " not loaded");
+        } finally {
+            desk.close();
+        }
+
+        SqlMemberQueries queries = new SqlMemberQueries((m, field) -> { }, centre.getDb());
+        try {
+            int max = queries.maxHcNumber();
+            check("highest HC Number read from the primary", max == highestOf(centre),
+                "read " + max);
+        } finally {
+            queries.close();
+        }
+    }
+
+    /**
+     * Checks that in pushdown mode a desk sees its own writes while they are
+     * still in the outbox: the drainer is held off while a member is added and
+     * another visits, and both are looked up. Once drained, the visit must be
+     * in the database exactly once.
+     */
+    private void checkPushdownSeesUnsavedWrites(Centre centre) throws SQLException {
+        String hc = String.valueOf(centre.getFirstHcNumber() + 2);
+        int visits;
+        try (Connection conn = centre.getDb().getConnection()) {
+            visits = visitsOf(conn, hc);
+        }
+
+        System.setProperty("hcms.store", "sql");
+        MemberManager desk;
+        try {
+            desk = new MemberManager(centre);
+        } finally {
+            System.clearProperty("hcms.store");
+        }
+        String added;
+        try {
+            PersistenceOutbox outbox = desk.getOutbox();
+            if (outbox == null) {
+                check("pushdown desk has an outbox", false, "the outbox could not be opened");
+                return;
+            }
+            // Nothing is saved while this runs
+            added = outbox.readConsistently(pending -> {
+                HCMember m = desk.addMember("Unsaved", "Member", 'M', 40, 70, "2 Check Street");
+                HCMember found = desk.findMemberByHCNumber(m.getHCNumber());
+                check("an unsaved new member is found", found != null && "Unsaved".equals(found.getForename()),
+                    m.getHCNumber() + " not found");
+
+                desk.findMemberByHCNumber(hc).recordVisit();
+                HCMember again = desk.findMemberByHCNumber(hc);
+                check("an unsaved visit is seen by lookups", again != null && again.getVisitTally() == visits + 1,
+                    "read " + (again != null ? again.getVisitTally() : null) + ", expected " + (visits + 1));
+
+                HCMember row = null;
+                for (HCMember r : desk.getMembersByGender(again.getGender())) {
+                    if (r.getHCNumber().equals(hc)) row = r;
+                }
+                check("an unsaved visit is seen in report rows", row != null && row.getVisitTally() == visits + 1,
+                    "read " + (row != null ? row.getVisitTally() : null) + ", expected " + (visits + 1));
+
+                try (Connection conn = centre.getDb().getConnection()) {
+                    check("the writes were still unsaved", visitsOf(conn, hc) == visits
+                        && forenameOf(conn, m.getHCNumber()) == null, "the drainer saved them during the check");
+                }
+                return m.getHCNumber();
+            });
+        } finally {
+            desk.close();
+        }
+
+        try (Connection conn = centre.getDb().getConnection()) {
+            check("drained writes are saved once", visitsOf(conn, hc) == visits + 1
+                && "Unsaved".equals(forenameOf(conn, added)), "visits " + visitsOf(conn, hc) + ", expected " + (visits + 1));
+        }
+    }
+
+    /**
+     * Checks the outbox journal's crash recovery: each journal gets three
+     * visits and is damaged as a crash would leave it, and every visit that
+     * survives must be saved exactly once.
+     */
+    private void checkJournalRecovery(Centre centre) throws SQLException, IOException {
+        String hc = String.valueOf(centre.getFirstHcNumber() + 3);
+        int visits;
+        try (Connection conn = centre.getDb().getConnection()) {
+            visits = visitsOf(conn, hc);
+        }
+
+        // Cut off in the middle of the last record
+        Path torn = journalOf(centre, hc, 3);
+        byte[] content = Files.readAllBytes(torn);
+        Files.write(torn, Arrays.copyOf(content, content.length - 5));
+        int replayed = replay(centre, torn);
+        visits += 2;
+        try (Connection conn = centre.getDb().getConnection()) {
+            check("a torn last record is dropped, the rest saved once", replayed == 2 && visitsOf(conn, hc) == visits,
+                replayed + " replayed, visits " + visitsOf(conn, hc) + ", expected " + visits);
+        }
+
+        // A bit flipped in the last record
+        Path damaged = journalOf(centre, hc, 3);
+        content = Files.readAllBytes(damaged);
+        content[content.length - 1] ^= 0x40;
+        Files.write(damaged, content);
+        replayed = replay(centre, damaged);
+        visits += 2;
+        try (Connection conn = centre.getDb().getConnection()) {
+            check("a record failing its CRC is dropped", replayed == 2 && visitsOf(conn, hc) == visits,
+                replayed + " replayed, visits " + visitsOf(conn, hc) + ", expected " + visits);
+        }
+
+        // Saved, then a crash before the header recorded it: the file is as it was before draining
+        Path saved = journalOf(centre, hc, 3);
+        content = Files.readAllBytes(saved);
+        replay(centre, saved);
+        Files.write(saved, content);
+        replayed = replay(centre, saved);
+        visits += 3;
+        try (Connection conn = centre.getDb().getConnection()) {
+            check("entries saved before a crash are not applied again", replayed == 0 && visitsOf(conn, hc) == visits,
+                replayed + " replayed, visits " + visitsOf(conn, hc) + ", expected " + visits);
+        }
+
+        for (Path file : List.of(torn, damaged, saved)) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Checks group commit: with desks submitting at the same moment (so they
+     * share fsyncs), every write acknowledged must still be in the file, and
+     * be saved exactly once, when the desk restarts from it.
+     */
+    private void checkGroupCommit(Centre centre) throws SQLException, IOException, InterruptedException {
+        String hc = String.valueOf(centre.getFirstHcNumber() + 5);
+        int visits;
+        try (Connection conn = centre.getDb().getConnection()) {
+            visits = visitsOf(conn, hc);
+        }
+
+        Path file = Files.createTempFile("hcms-check-journal", ".log");
+        PersistenceOutbox outbox = new PersistenceOutbox(file, centre.getDb(), EmbeddedDbCheck::addVisits);
+        int desks = 8;
+        int each = 50;
+        AtomicInteger acknowledged = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int d = 0; d < desks; d++) {
+            Thread t = new Thread(() -> {
+                try {
+                    go.await();
+                    for (int i = 0; i < each; i++) {
+                        outbox.submit(visitTo(hc));
+                        acknowledged.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error writing to outbox: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        go.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        // What a crash straight after the last acknowledgement would leave
+        byte[] content = Files.readAllBytes(file);
+        outbox.close(0);
+        Files.write(file, content);
+
+        int replayed = replay(centre, file);
+        visits += acknowledged.get();
+        try (Connection conn = centre.getDb().getConnection()) {
+            check("every acknowledged write is in the journal", acknowledged.get() == desks * each
+                && replayed == acknowledged.get(), replayed + " of " + acknowledged.get() + " found");
+            check("concurrent writes are saved once each", visitsOf(conn, hc) == visits,
+                "visits " + visitsOf(conn, hc) + ", expected " + visits);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Checks the optimistic conflict merge with two desks updating the same
+     * member at once, each through its own outbox: one also changes the
+     * weight and the other the age. Every visit from both desks must add up,
+     * and both field changes must survive.
+     */
+    private void checkConcurrentDesks(Centre centre) throws SQLException, IOException, InterruptedException {
+        String hc = String.valueOf(centre.getFirstHcNumber() + 6);
+        OptimisticUpdater.Row before;
+        try (Connection conn = centre.getDb().getConnection()) {
+            before = OptimisticUpdater.readRow(conn, hc);
+        }
+        double weight = before.weight == 77.5 ? 78.5 : 77.5;
+        int age = before.age == 55 ? 56 : 55;
+        int each = 100;
+
+        String outboxFile = System.getProperty("hcms.outbox.file");
+        MemberManager[] desks = new MemberManager[2];
+        try {
+            for (int d = 0; d < desks.length; d++) {
+                System.setProperty("hcms.outbox.file", Files.createTempFile("hcms-check-desk", ".log").toString());
+                desks[d] = new MemberManager(centre);
+            }
+        } finally {
+            System.setProperty("hcms.outbox.file", outboxFile);
+        }
+
+        long conflicts = Metrics.counter("update.conflicts").sum();
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int d = 0; d < desks.length; d++) {
+            HCMember m = desks[d].findMemberByHCNumber(hc);
+            boolean first = d == 0;
+            Thread t = new Thread(() -> {
+                try {
+                    go.await();
+                    if (first) {
+                        m.setWeight(weight);
+                    } else {
+                        m.setAge(age);
+                    }
+                    for (int i = 0; i < each; i++) {
+                        m.recordVisit();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        go.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (MemberManager desk : desks) {
+            desk.close();
+        }
+        conflicts = Metrics.counter("update.conflicts").sum() - conflicts;
+        if (Metrics.ENABLED) {
+            // Counted only with -Dhcms.metrics=true
+            check("the two desks' writes conflicted", conflicts > 0, "no conflicts; nothing was merged");
+        }
+
+        try (Connection conn = centre.getDb().getConnection()) {
+            OptimisticUpdater.Row after = OptimisticUpdater.readRow(conn, hc);
+            int expected = before.visitTally + desks.length * each;
+            check("visits from two desks at once all add up", after.visitTally == expected,
+                "visits " + after.visitTally + ", expected " + expected);
+            check("field changes from two desks at once both survive", after.weight == weight && after.age == age,
+                "weight " + after.weight + ", age " + after.age);
+            long writes = desks.length * (each + 1);
+            check("every conflicting write moved the version on once", after.version == before.version + writes,
+                "version " + after.version + ", expected " + (before.version + writes));
+        }
+    }
+
+    /**
+     * Checks that a desk running several centres routes members to the centre
+     * that owns them and merges the centres' reports in HC Number order.
+     */
+    private void checkShards(List<Centre> centres) throws SQLException, IOException {
+        for (Centre c : centres) {
+            // Each shard keeps an outbox; keep them out of the working directory
+            String property = c.getCode() == 0 ? "hcms.outbox.file" : "hcms.outbox.file." + c.getCode();
+            if (System.getProperty(property) == null) {
+                System.setProperty(property, Files.createTempFile("hcms-check-outbox", ".log").toString());
+            }
+        }
+        ShardedMemberManager desk = new ShardedMemberManager(centres, centres.get(0).getCode());
+        try {
+            int expected = MEMBERS * centres.size();
+            check("members of every centre loaded", desk.getTotalCount() == expected,
+                desk.getTotalCount() + " of " + expected);
+
+            boolean routed = true;
+            for (Centre c : centres) {
+                HCMember m = desk.findMemberByHCNumber(String.valueOf(c.getFirstHcNumber() + 1));
+                routed &= m != null && Centre.codeOf(m.getHCNumber()) == c.getCode();
+            }
+            check("lookups go to the owning centre", routed, "a member was not found at its centre");
+
+            int women = 0;
+            for (Centre c : centres) {
+                try (Connection conn = c.getDb().getConnection()) {
+                    women += count(conn, "Gender = 'F'");
+                }
+            }
+            long last = -1;
+            int read = 0;
+            boolean ordered = true;
+            for (HCMember m : desk.getMembersByGender('F')) {
+                long hc = Long.parseLong(m.getHCNumber());
+                ordered &= hc > last;
+                last = hc;
+                read++;
+            }
+            check("reports merge every centre in HC Number order", ordered && read == women,
+                "read " + read + " of " + women + (ordered ? "" : ", out of order"));
+
+            StatsPack pack = desk.runAllReports(3);
+            check("combined stats cover every centre", pack.getTotal() == expected, "total " + pack.getTotal());
+
+            Centre home = centres.get(0);
+            HCMember added = desk.addMember("Check", "Member", 'F', 30, 60, "1 Check Street");
+            check("new members join the desk's centre",
+                added != null && added.getHCNumber().equals(String.valueOf(highestOf(home) + 1)),
+                "added as " + (added != null ? added.getHCNumber() : null));
+        } finally {
+            desk.close();
+        }
+    }
+
+    // =========================================================================
+    // Entry Point
+    // =========================================================================
+
+    /**
+     * Sets up the databases and runs every check.
+     * @return True if every check passed.
+     */
+    public boolean run() throws SQLException, IOException, InterruptedException {
+        if (System.getProperty("hcms.db.url") == null || System.getProperty("hcms.db.replicaUrl") == null) {
+            throw new IllegalStateException("set -Dhcms.db.url and -Dhcms.db.replicaUrl to embedded databases");
+        }
+        Centre main = Centre.of(0);
+        System.out.println("Dialect: " + main.getDb().getDialect());
+        try (Connection primary = main.getDb().getConnection(); Connection replica = connectReplica()) {
+            createTables(primary);
+            createTables(replica);
+            new PopulationGenerator(42).generateIntoDatabase(main, MEMBERS, 100);
+            renumberLast(primary, main);
+            copyMembers(primary, replica);
+        }
+
+        checkReplicaRouting(main);
+        checkPushdownQueries(main);
+        checkStartupReadsPrimary(main);
+
+        if (Centre.isSharded()) {
+            List<Centre> centres = Centre.configured();
+            for (Centre c : centres) {
+                if (c.getCode() == 0) continue;
+                try (Connection conn = c.getDb().getConnection()) {
+                    createTables(conn);
+                    new PopulationGenerator(c.getCode()).generateIntoDatabase(c, MEMBERS, 100);
+                    renumberLast(conn, c);
+                }
+            }
+            checkShards(centres);
+        }
+        // Adds a member, so it runs after the checks of where new members go
+        checkPushdownSeesUnsavedWrites(main);
+        checkJournalRecovery(main);
+        checkGroupCommit(main);
+        checkConcurrentDesks(main);
+
+        System.out.println(passed + " passed, " + failed + " failed");
+        return failed == 0;
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(new EmbeddedDbCheck().run() ? 0 : 1);
+        } catch (SQLException | IOException | IllegalStateException | IllegalArgumentException e) {
+            System.out.println("Error running the check: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.exit(1);
+    }
+}
\ No newline at end of file
@@ -1,4 +1,7 @@
 package HealthCentreMemberSystem;
+
+import java.time.LocalDate;
+
 /*
  * HCMember.java
  * Represents a specific Health Centre Member.
@@ -6,51 +9,33 @@ package HealthCentreMemberSystem;
  */
 public class HCMember {
 
-    // =========================================================================
-    // Validation Constants (The Rules of the System)
-    // =========================================================================
-    
-    /** Minimum age for a member */
-    private static final int MIN_AGE = 18;               
-    /** Maximum  age for a member */
-    private static final int MAX_AGE = 100;              
-    
-    /** Minimum weight in kg */
-    private static final double MIN_WEIGHT = 20.0;       
-    /** Maximum weight in kg */
-    private static final double MAX_WEIGHT = 150.0;      
-    
-    /** Minimum valid systolic blood pressure */
-    private static final int MIN_SYSTOLIC = 40;          
-    /** Maximum valid systolic blood pressure  */
-    private static final int MAX_SYSTOLIC = 180;         
-    
-    /** Minimum valid diastolic blood pressure */
-    private static final int MIN_DIASTOLIC = 40;         
-    /** Maximum valid diastolic blood pressure */
-    private static final int MAX_DIASTOLIC = 120;        
-    
-    /** Minimum character length for names */
-    private static final int MIN_NAME_LENGTH = 2;        
-    /** Minimum character length for addresses */
-    private static final int MIN_ADDRESS_LENGTH = 5;     
-    /** Maximum character length for addresses */
-    private static final int MAX_ADDRESS_LENGTH = 100;    
-    
+    // Validation limits (age, weight, name and address lengths, blood pressure
+    // ranges and thresholds) are configurable, see BloodPressureRules
+
     // =========================================================================
     // Instance Variables (Member Data)
     // =========================================================================
     
+    // Changeable fields are volatile so every trainer's thread sees the latest value
     private String hcNumber;       // Unique ID
     private String forename;       
     private String surname;        
     private char gender;           
-    private String address;        
-    private boolean fConsultation; // True if free consultation completed
-    private double weight;         
-    private int age;               
-    private String bloodPressure;  // e.g., "High", "Normal", "Low"
-    private int visitTally;        // Counter for visits
+    private volatile String address;        // null while not loaded (see addressCache)
+    private volatile boolean fConsultation; // True if free consultation completed
+    private volatile double weight;         
+    private volatile int age;               
+    private volatile String bloodPressure;  // e.g., "High", "Normal", "Low"
+    private volatile int systolic;          // Last reading (0 if none recorded)
+    private volatile int diastolic;
+    private volatile int visitTally;        // Counter for visits
+    private volatile long version;          // Row version in the database, for optimistic updates
+    private volatile LocalDate consultationDue; // When the next free consultation falls due (may be null)
+
+    /** Told about every change so the owner can keep caches up to date (may be null). */
+    private MemberListener listener;
+    /** Where the address is fetched from while it has not been loaded (null once loaded). */
+    private volatile AddressCache addressCache;
 
     /**
      * Parameterised Constructor.
@@ -87,32 +72,45 @@ public class HCMember {
      * Increments the visit tally and prints a confirmation to the console.
      */
     public void visitedCentre() {
-        this.visitTally++;
-        System.out.println("Visit recorded. Total visits: " + this.visitTally);
+        System.out.println("Visit recorded. Total visits: " + recordVisit());
+    }
+
+    /**
+     * Records a visit without printing a confirmation (e.g. for the load test).
+     * @return The new visit total.
+     */
+    public int recordVisit() {
+        int total;
+        synchronized (this) {
+            total = ++this.visitTally;
+        }
+        changed(MemberField.VISITS);
+        return total;
     }
 
     /**
-     * Calculates the blood pressure category 
+     * Records a blood pressure reading and calculates its category
+     * using the configured BloodPressureRules (by default:
      * High:Systolic > 140 OR Diastolic > 90
      * Low: Systolic < 90 OR Diastolic < 60
-     * Normal:Any other valid reading
+     * Normal:Any other valid reading).
+     * The reading is kept so the category can be recomputed if the rules change.
      * @return The string category ("High", "Low", "Normal") or "Invalid reading".
      */
     public String calcBloodPressure(int systolic, int diastolic) {
-        // Validate inputs 
-        if (!isValidSystolic(systolic) || !isValidDiastolic(diastolic)) {
+        // Validate inputs and determine category
+        String category = BloodPressureRules.current().classify(systolic, diastolic);
+        if (category == null) {
             return "Invalid reading";
         }
-
-        // Determine category
-        if (systolic > 140 || diastolic > 90) {
-            this.bloodPressure = "High";
-        } else if (systolic < 90 || diastolic < 60) {
-            this.bloodPressure = "Low";
-        } else {
-            this.bloodPressure = "Normal";
+        synchronized (this) {
+            this.systolic = systolic;
+            this.diastolic = diastolic;
+            this.bloodPressure = category;
         }
-        return this.bloodPressure;
+        changed(MemberField.BP_READING);
+        changed(MemberField.BLOOD_PRESSURE);
+        return category;
     }
 
     /**
@@ -135,21 +133,23 @@ public class HCMember {
      * Checks if an age is within range.
      */
     public static boolean isValidAge(int age) {
-        return age >= MIN_AGE && age <= MAX_AGE;
+        BloodPressureRules rules = BloodPressureRules.current();
+        return age >= rules.getMinAge() && age <= rules.getMaxAge();
     }
 
     /**
      * Checks if a weight is within range.
      */
     public static boolean isValidWeight(double weight) {
-        return weight >= MIN_WEIGHT && weight <= MAX_WEIGHT;
+        BloodPressureRules rules = BloodPressureRules.current();
+        return weight >= rules.getMinWeight() && weight <= rules.getMaxWeight();
     }
     
     /**
      * Checks if a name is valid.
      */
     public static boolean isValidName(String name) {
-        return name != null && name.trim().length() >= MIN_NAME_LENGTH;
+        return name != null && name.trim().length() >= BloodPressureRules.current().getMinNameLength();
     }
 
     /**
@@ -158,15 +158,16 @@ public class HCMember {
     public static boolean isValidAddress(String address) {
         if (address == null) return false;
         String trimmed = address.trim();
-        return trimmed.length() >= MIN_ADDRESS_LENGTH && trimmed.length() <= MAX_ADDRESS_LENGTH;
+        BloodPressureRules rules = BloodPressureRules.current();
+        return trimmed.length() >= rules.getMinAddressLength() && trimmed.length() <= rules.getMaxAddressLength();
     }
 
     public static boolean isValidSystolic(int systolic) {
-        return systolic >= MIN_SYSTOLIC && systolic <= MAX_SYSTOLIC;
+        return BloodPressureRules.current().isValidSystolic(systolic);
     }
 
     public static boolean isValidDiastolic(int diastolic) {
-        return diastolic >= MIN_DIASTOLIC && diastolic <= MAX_DIASTOLIC;
+        return BloodPressureRules.current().isValidDiastolic(diastolic);
     }
 
     // =========================================================================
@@ -176,6 +177,8 @@ public class HCMember {
     public boolean setAddress(String address) {
         if (isValidAddress(address)) {
             this.address = address.trim();
+            this.addressCache = null;
+            changed(MemberField.ADDRESS);
             return true;
         }
         return false;
@@ -184,6 +187,7 @@ public class HCMember {
     public boolean setAge(int age) {
         if (isValidAge(age)) {
             this.age = age;
+            changed(MemberField.AGE);
             return true;
         }
         return false;
@@ -192,13 +196,105 @@ public class HCMember {
     public boolean setWeight(double weight) {
         if (isValidWeight(weight)) {
             this.weight = weight;
+            changed(MemberField.WEIGHT);
             return true;
         }
         return false;
     }
     
+    /**
+     * Restores the stored blood pressure category (used when loading from the database).
+     */
+    void setBloodPressure(String bloodPressure) {
+        this.bloodPressure = bloodPressure;
+    }
+
+    /**
+     * Restores the stored blood pressure reading (used when loading from the database).
+     */
+    synchronized void setReading(int systolic, int diastolic) {
+        this.systolic = systolic;
+        this.diastolic = diastolic;
+    }
+
+    /**
+     * Restores the stored visit count (used when loading from the database).
+     */
+    void setVisitTally(int visitTally) {
+        this.visitTally = visitTally;
+    }
+
+    /**
+     * Restores the stored row version (used when loading and after saving).
+     */
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Sets the date the next consultation falls due, without notifying the listener.
+     * The MemberManager sets this whenever a consultation is recorded.
+     */
+    void setConsultationDue(LocalDate consultationDue) {
+        this.consultationDue = consultationDue;
+    }
+
+    /**
+     * Restores every mutable field at once without notifying the listener.
+     * Used when replaying unsaved writes or taking on changes made at another desk.
+     * A null address leaves the address as it is (loaded or not).
+     */
+    synchronized void restoreState(int visitTally, String bloodPressure, boolean fConsultation, double weight, int age, String address) {
+        this.visitTally = visitTally;
+        this.bloodPressure = bloodPressure;
+        this.fConsultation = fConsultation;
+        this.weight = weight;
+        this.age = age;
+        if (address != null) {
+            this.address = address;
+            this.addressCache = null;
+        }
+    }
+
+    /**
+     * Marks the address as not loaded: it is fetched through the cache when asked for.
+     */
+    void leaveAddressUnloaded(AddressCache cache) {
+        this.address = null;
+        this.addressCache = cache;
+    }
+
+    /** @return True if the address is held on the member itself. */
+    boolean isAddressLoaded() {
+        return addressCache == null;
+    }
+
+    /** @return The address if it is held on the member, otherwise null (never fetches). */
+    String loadedAddress() {
+        return address;
+    }
+
     public void setFConsultation(boolean status) {
         this.fConsultation = status;
+        changed(MemberField.CONSULTATION);
+    }
+
+    // =========================================================================
+    // Change Notification
+    // =========================================================================
+
+    /**
+     * Sets the listener told about changes to this member.
+     * Only the MemberManager that owns the member should call this.
+     */
+    void setListener(MemberListener listener) {
+        this.listener = listener;
+    }
+
+    private void changed(MemberField field) {
+        if (listener != null) {
+            listener.memberChanged(this, field);
+        }
     }
 
     // =========================================================================
@@ -213,42 +309,51 @@ public class HCMember {
     public int getAge() { return age; }
     public String getBloodPressure() { return bloodPressure; }
     public boolean isFConsultation() { return fConsultation; }
+    public int getSystolic() { return systolic; }
+    public int getDiastolic() { return diastolic; }
     public int getVisitTally() { return visitTally; }
-    public String getAddress() { return address; }
+    public String getAddress() {
+        String loaded = address;
+        AddressCache cache = addressCache;
+        // Not kept on the member, so it does not add to resident memory
+        return loaded == null && cache != null ? cache.get(hcNumber) : loaded;
+    }
+    public long getVersion() { return version; }
+    public LocalDate getConsultationDue() { return consultationDue; }
 
     // =========================================================================
     // Static Accessors 
     // =========================================================================
     
-    public static int getMinAge() { return MIN_AGE; }
-    public static int getMaxAge() { return MAX_AGE; }
-    public static double getMinWeight() { return MIN_WEIGHT; }
-    public static double getMaxWeight() { return MAX_WEIGHT; }
-    public static int getMinSystolic() { return MIN_SYSTOLIC; }
-    public static int getMaxSystolic() { return MAX_SYSTOLIC; }
-    public static int getMinDiastolic() { return MIN_DIASTOLIC; }
-    public static int getMaxDiastolic() { return MAX_DIASTOLIC; }
-    public static int getMinNameLength() { return MIN_NAME_LENGTH; }
-    public static int getMinAddressLength() { return MIN_ADDRESS_LENGTH; }
-    public static int getMaxAddressLength() { return MAX_ADDRESS_LENGTH; }
+    public static int getMinAge() { return BloodPressureRules.current().getMinAge(); }
+    public static int getMaxAge() { return BloodPressureRules.current().getMaxAge(); }
+    public static double getMinWeight() { return BloodPressureRules.current().getMinWeight(); }
+    public static double getMaxWeight() { return BloodPressureRules.current().getMaxWeight(); }
+    public static int getMinSystolic() { return BloodPressureRules.current().getMinSystolic(); }
+    public static int getMaxSystolic() { return BloodPressureRules.current().getMaxSystolic(); }
+    public static int getMinDiastolic() { return BloodPressureRules.current().getMinDiastolic(); }
+    public static int getMaxDiastolic() { return BloodPressureRules.current().getMaxDiastolic(); }
+    public static int getMinNameLength() { return BloodPressureRules.current().getMinNameLength(); }
+    public static int getMinAddressLength() { return BloodPressureRules.current().getMinAddressLength(); }
+    public static int getMaxAddressLength() { return BloodPressureRules.current().getMaxAddressLength(); }
 
     // =========================================================================
     // Validation Messages
     // =========================================================================
     
     public static String getWeightValidationMessage() {
-        return "Weight must be between " + MIN_WEIGHT + " and " + MAX_WEIGHT + "kg.";
+        return "Weight must be between " + getMinWeight() + " and " + getMaxWeight() + "kg.";
     }
     public static String getSystolicValidationMessage() {
-        return "Systolic pressure must be between " + MIN_SYSTOLIC + " and " + MAX_SYSTOLIC + ".";
+        return "Systolic pressure must be between " + getMinSystolic() + " and " + getMaxSystolic() + ".";
     }
     public static String getDiastolicValidationMessage() {
-        return "Diastolic pressure must be between " + MIN_DIASTOLIC + " and " + MAX_DIASTOLIC + ".";
+        return "Diastolic pressure must be between " + getMinDiastolic() + " and " + getMaxDiastolic() + ".";
     }
     public static String getNameValidationMessage(String field) {
-        return field + " must be at least " + MIN_NAME_LENGTH + " characters.";
+        return field + " must be at least " + getMinNameLength() + " characters.";
     }
     public static String getAddressValidationMessage() {
-        return "Address must be between " + MIN_ADDRESS_LENGTH + " and " + MAX_ADDRESS_LENGTH + " characters.";
+        return "Address must be between " + getMinAddressLength() + " and " + getMaxAddressLength() + " characters.";
     }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+/*
+ * LatencyHistogram.java
+ * A lock-free histogram for recording operation latencies in nanoseconds.
+ * Values are grouped into log-linear buckets (8 per power of two), so
+ * percentiles are accurate to roughly 12% without storing every sample.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+
+    /** Number of bits used for the sub-buckets inside each power of two. */
+    private static final int SUB_BUCKET_BITS = 3;
+    /** Sub-buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Enough buckets to hold any positive long value. */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param name The metric name shown in reports and over JMX.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a single latency value.
+     * @param nanos The latency in nanoseconds (negative values count as zero).
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(bucketIndex(nanos));
+        count.increment();
+        total.add(nanos);
+
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since a value returned by Metrics.start().
+     * Does nothing when metrics are disabled.
+     * @param startNanos The start timestamp.
+     */
+    public void recordSince(long startNanos) {
+        if (Metrics.ENABLED) {
+            record(System.nanoTime() - startNanos);
+        }
+    }
+
+    // =========================================================================
+    // Bucket Maths
+    // =========================================================================
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value that falls into a bucket.
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = (index % SUB_BUCKETS) + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    // =========================================================================
+    // Getters
+    // =========================================================================
+
+    public String getName() { return name; }
+    public long getCount() { return count.sum(); }
+    public long getMax() { return max.get(); }
+
+    /**
+     * @return The mean latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) total.sum() / n;
+    }
+
+    /**
+     * Estimates a percentile from the bucket counts.
+     * @param percentile Value between 0 and 100.
+     * @return The latency in nanoseconds at that percentile.
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long n = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+
+        long target = (long) Math.ceil(n * percentile / 100.0);
+        if (target < 1) target = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns a one line summary in microseconds.
+     */
+    @Override
+    public String toString() {
+        return String.format("%-28s count=%-9d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+            name, getCount(), getMean() / 1000.0,
+            getPercentile(50) / 1000.0, getPercentile(90) / 1000.0,
+            getPercentile(99) / 1000.0, getMax() / 1000.0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,186 @@
+/*
+ * LoadTestHarness.java
+ * Simulates several trainers using the system at the same time.
+ * Each trainer thread runs a random mix of lookups, visits, blood pressure
+ * updates and stats reports against one shared MemberManager, and the
+ * throughput and latency percentiles of each operation are reported.
+ *
+ * Usage: java HealthCentreMemberSystem.LoadTestHarness [trainers] [seconds]
+ * Populate the database first with PopulationGenerator.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LoadTestHarness {
+
+    /** The operations a trainer performs, with their share of the workload (%). */
+    enum Operation {
+        LOOKUP(50),
+        VISIT(25),
+        BP_UPDATE(10),
+        REPORT(15);
+
+        final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final MemberManager manager;
+    private final String[] ids;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final AtomicLong errors = new AtomicLong();
+    /** The first error a trainer hit, shown with the results. */
+    private final AtomicReference<RuntimeException> firstError = new AtomicReference<>();
+
+    /**
+     * Constructor.
+     * @param manager The manager the trainers share.
+     */
+    public LoadTestHarness(MemberManager manager) {
+        this.manager = manager;
+        List<HCMember> all = manager.getAllMembers();
+        this.ids = new String[all.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = all.get(i).getHCNumber();
+        }
+        for (Operation op : Operation.values()) {
+            latencies[op.ordinal()] = new LatencyHistogram(op.name());
+        }
+    }
+
+    /**
+     * Runs the workload and prints the results.
+     * @param trainers How many trainers (threads) to simulate.
+     * @param seconds  How long to run for.
+     */
+    public void run(int trainers, int seconds) throws InterruptedException {
+        if (ids.length == 0) {
+            System.out.println("No members loaded - run PopulationGenerator first.");
+            return;
+        }
+        System.out.println("Running " + trainers + " trainers for " + seconds + "s over " + ids.length + " members...");
+        // Outbox and scheduler problems are printed as they happen; these count what the run caused
+        PersistenceOutbox outbox = manager.getOutbox();
+        long failuresBefore = outbox != null ? outbox.getFailureCount() : 0;
+        long setAsideBefore = outbox != null ? outbox.getSetAsideCount() : 0;
+
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int t = 0; t < trainers; t++) {
+            Thread thread = new Thread(() -> trainerLoop(startGate, deadline), "trainer-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        startGate.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        printResults(elapsed);
+        if (outbox != null) {
+            System.out.println("Outbox depth after run: " + outbox.getDepth());
+            System.out.println("Outbox: " + (outbox.getFailureCount() - failuresBefore) + " failed database attempts, "
+                + (outbox.getSetAsideCount() - setAsideBefore) + " writes given up on (saved to "
+                + outbox.getFailedFile() + ")");
+        }
+    }
+
+    private void trainerLoop(CountDownLatch startGate, long deadline) {
+        try {
+            startGate.await();
+        } catch (InterruptedException e) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Operation op = pickOperation(random.nextInt(100));
+            long start = System.nanoTime();
+            try {
+                perform(op, random);
+            } catch (RuntimeException e) {
+                errors.incrementAndGet();
+                firstError.compareAndSet(null, e);
+            }
+            latencies[op.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    private static Operation pickOperation(int roll) {
+        int total = 0;
+        for (Operation op : Operation.values()) {
+            total += op.weight;
+            if (roll < total) return op;
+        }
+        return Operation.LOOKUP;
+    }
+
+    private void perform(Operation op, ThreadLocalRandom random) {
+        String id = ids[random.nextInt(ids.length)];
+        switch (op) {
+            case LOOKUP:
+                manager.findMemberByHCNumber(id);
+                break;
+            case VISIT:
+                manager.findMemberByHCNumber(id).recordVisit();
+                break;
+            case BP_UPDATE:
+                manager.findMemberByHCNumber(id).calcBloodPressure(
+                    random.nextInt(95, 170), random.nextInt(55, 105));
+                break;
+            case REPORT:
+                switch (random.nextInt(5)) {
+                    case 0: manager.getMembersByGender(random.nextBoolean() ? 'M' : 'F'); break;
+                    case 1: manager.getHighBloodPressureMembers(); break;
+                    case 2: manager.getMembersDueForConsultation(); break;
+                    case 3: manager.getMembersWithLowVisits(5); break;
+                    default: manager.getTopMembers(RankField.VISITS, 50); break;
+                }
+                break;
+        }
+    }
+
+    private void printResults(double elapsed) {
+        System.out.println("================================================================================");
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s\n",
+            "Operation", "Count", "Ops/s", "p50 us", "p95 us", "p99 us", "Max us");
+        System.out.println("--------------------------------------------------------------------------------");
+        long total = 0;
+        for (Operation op : Operation.values()) {
+            LatencyHistogram h = latencies[op.ordinal()];
+            total += h.getCount();
+            System.out.printf("%-10s %10d %10.0f %10.1f %10.1f %10.1f %10.1f\n",
+                op, h.getCount(), h.getCount() / elapsed,
+                h.getPercentile(50) / 1000.0, h.getPercentile(95) / 1000.0,
+                h.getPercentile(99) / 1000.0, h.getMax() / 1000.0);
+        }
+        System.out.println("--------------------------------------------------------------------------------");
+        System.out.printf("Total: %d operations in %.1fs (%.0f ops/s), %d errors\n",
+            total, elapsed, total / elapsed, errors.get());
+        RuntimeException error = firstError.get();
+        if (error != null) {
+            System.out.println("First error: " + error);
+        }
+        System.out.printf("Report cache hit rate: %.1f%%\n", manager.getReportCache().getHitRate() * 100);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int trainers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        MemberManager manager = new MemberManager();
+        new LoadTestHarness(manager).run(trainers, seconds);
+        manager.close();
+    }
+}
\ No newline at end of file
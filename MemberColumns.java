@@ -0,0 +1,71 @@
+/*
+ * MemberColumns.java
+ * The numeric member data needed for batch scoring, copied out of the
+ * members into one primitive array per field (column layout). Scoring
+ * kernels then run straight down the arrays instead of calling getters on
+ * millions of objects, which also lets them work several members at once.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+public final class MemberColumns {
+
+    /** Blood pressure category codes held in the bpCategory column. */
+    public static final float BP_NORMAL = 0f;
+    public static final float BP_HIGH = 1f;
+    public static final float BP_LOW = 2f;
+    public static final float BP_NONE = 3f;
+
+    final int size;
+    final String[] hcNumbers;
+    final float[] age;
+    final float[] weight;
+    final float[] systolic;
+    final float[] diastolic;
+    final float[] visits;
+    final float[] bpCategory;
+
+    private MemberColumns(int size) {
+        this.size = size;
+        this.hcNumbers = new String[size];
+        this.age = new float[size];
+        this.weight = new float[size];
+        this.systolic = new float[size];
+        this.diastolic = new float[size];
+        this.visits = new float[size];
+        this.bpCategory = new float[size];
+    }
+
+    /**
+     * Copies the members' data into columns, in parallel.
+     * The list must not change while it is being copied.
+     */
+    public static MemberColumns of(List<HCMember> members) {
+        MemberColumns c = new MemberColumns(members.size());
+        IntStream.range(0, c.size).parallel().forEach(i -> {
+            HCMember m = members.get(i);
+            c.hcNumbers[i] = m.getHCNumber();
+            c.age[i] = m.getAge();
+            c.weight[i] = (float) m.getWeight();
+            c.systolic[i] = m.getSystolic();
+            c.diastolic[i] = m.getDiastolic();
+            c.visits[i] = m.getVisitTally();
+            c.bpCategory[i] = categoryCode(m.getBloodPressure());
+        });
+        return c;
+    }
+
+    static float categoryCode(String bloodPressure) {
+        if ("High".equalsIgnoreCase(bloodPressure)) return BP_HIGH;
+        if ("Low".equalsIgnoreCase(bloodPressure)) return BP_LOW;
+        if ("Normal".equalsIgnoreCase(bloodPressure)) return BP_NORMAL;
+        return BP_NONE;
+    }
+
+    /** @return The number of members. */
+    public int size() {
+        return size;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,16 @@
+/*
+ * MemberField.java
+ * The mutable pieces of member data, used when reporting a change to a member.
+ */
+package HealthCentreMemberSystem;
+
+public enum MemberField {
+    VISITS,
+    BLOOD_PRESSURE,
+    BP_READING,
+    CONSULTATION,
+    CONSULTATION_DUE,
+    WEIGHT,
+    AGE,
+    ADDRESS
+}
\ No newline at end of file
@@ -0,0 +1,15 @@
+/*
+ * MemberListener.java
+ * Callback used by HCMember to tell its owner that member data has changed.
+ */
+package HealthCentreMemberSystem;
+
+public interface MemberListener {
+
+    /**
+     * Called after a field of a member has been successfully changed.
+     * @param member The member that changed.
+     * @param field  Which piece of data changed.
+     */
+    void memberChanged(HCMember member, MemberField field);
+}
\ No newline at end of file
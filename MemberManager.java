@@ -1,66 +1,245 @@
 /*
  * MemberManager.java
- * Handles the storage and retrieval of Member objects.
+ * Handles the storage and retrieval of Member objects for one centre.
  */
 package HealthCentreMemberSystem;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.sql.*;
 
-public class MemberManager {
-    /** The list holding all members. */
-    private ArrayList<HCMember> members;
+public class MemberManager implements MemberService, MemberListener {
+    /** The centre whose members these are. */
+    private final Centre centre;
+    /** The centre's database. */
+    private final DBConnector db;
+    /** The list holding all members (a view over the off-heap store in off-heap mode). */
+    private List<HCMember> members;
+    /** The off-heap record store, or null when members are kept on the heap. */
+    private OffHeapMemberStore store;
+    /** Runs lookups and reports as SQL in pushdown mode, otherwise null. */
+    private SqlMemberQueries queries;
+    /** HC Number lookup index over the same members (heap mode only). */
+    private final Map<String, HCMember> index = new ConcurrentHashMap<>();
+    /** Scans take the read lock, adding members takes the write lock. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     /** Counter to ensure every new member gets a unique ID. */
     private int nextHcNum;
 
+    /** Bumped whenever a member is added. */
+    private final AtomicLong membershipVersion = new AtomicLong();
+    /** One version counter per MemberField, bumped when that field changes on any member. */
+    private final AtomicLongArray fieldVersions = new AtomicLongArray(MemberField.values().length);
+    /** Cached results of the stats reports. */
+    private final ReportCache reportCache = new ReportCache(Integer.getInteger("hcms.reportCache.size", 32));
+    /** Durable queue of database writes (null if the outbox file could not be opened). */
+    private PersistenceOutbox outbox;
+    /** Queued UPDATE entries per HC Number, counted down as they drain. */
+    private final Map<String, Integer> pendingUpdates = new ConcurrentHashMap<>();
+    /** Pushdown mode: the version each member was read at and the version our writes since took it to. */
+    private final Map<String, long[]> ownVersions = new ConcurrentHashMap<>();
+    /** Expires consultations on each member's due date and keeps the set of due members. */
+    private final ConsultationScheduler scheduler;
+    /** Addresses fetched on demand, since members are loaded without them. */
+    private final AddressCache addressCache;
+    /** Members per database batch when blood pressure categories are recomputed. */
+    private static final int RECLASSIFY_BATCH = 1000;
+    /** The latest health-risk scores, or null before the first run. */
+    private volatile RiskScores riskScores;
+    /** Runs the nightly health-risk scoring, or null if it is off. */
+    private ScheduledExecutorService riskTimer;
+    /** HC Numbers by surname code and gender for the duplicate check on insert, or null if it is off. */
+    private Map<String, Set<String>> duplicateIndex;
+
     /**
      * Constructor.
-     * Initialises the list and sets the starting Health Centre Number.
+     * Manages the members of the original database (centre 0).
      */
     public MemberManager() {
+        this(Centre.of(0));
+    }
+
+    /**
+     * Constructor.
+     * Initialises the list and sets the starting Health Centre Number.
+     * @param centre The centre whose members are managed.
+     */
+    public MemberManager(Centre centre) {
+        this.centre = centre;
+        this.db = centre.getDb();
+        this.addressCache = new AddressCache(Integer.getInteger("hcms.addressCache.size", 10000), db);
         this.members = new ArrayList<>();
-        this.nextHcNum = 100001; // IDs start from 100001
+        if ("offheap".equalsIgnoreCase(System.getProperty("hcms.store"))) {
+            try {
+                store = new OffHeapMemberStore(Paths.get(centre.localFile("hcms.store.file", "hcms-members")), this, addressCache, centre);
+                members = store.asList();
+            } catch (IOException e) {
+                System.out.println("Error opening off-heap store, keeping members on the heap: " + e.getMessage());
+            }
+        } else if ("sql".equalsIgnoreCase(System.getProperty("hcms.store"))) {
+            queries = new SqlMemberQueries(this, db);
+            members = queries.all();
+        }
+        int expiryBatch = Integer.getInteger("hcms.consultation.batchSize", 500);
+        // Off-heap mode keeps nothing per member on the heap: due dates are read from the records
+        this.scheduler = store != null
+            ? new ConsultationScheduler(this::expireConsultations, expiryBatch, this::scanExpiredConsultations)
+            : new ConsultationScheduler(this::expireConsultations, expiryBatch);
+        if (Boolean.getBoolean("hcms.dedup.onInsert") && queries == null) {
+            if (store == null) {
+                duplicateIndex = new ConcurrentHashMap<>();
+            } else {
+                System.out.println("The duplicate check on insert is off in off-heap mode (it needs an index per member).");
+            }
+        }
+        this.nextHcNum = centre.getFirstHcNumber(); // IDs start from 100001 (within the centre's range)
+        // Gauges of centres other than 0 are prefixed with the centre, e.g. centre2.members.count
+        String prefix = centre.getCode() == 0 ? "" : "centre" + centre.getCode() + ".";
+        Metrics.gauge(prefix + "members.count", this::getTotalCount);
+        Metrics.gauge(prefix + "reportCache.hitRate", reportCache::getHitRate);
+        Metrics.gauge(prefix + "reportCache.hits", reportCache::getHits);
+        Metrics.gauge(prefix + "reportCache.misses", reportCache::getMisses);
+        Metrics.gauge(prefix + "reportCache.size", reportCache::getSize);
+        Metrics.gauge(prefix + "addressCache.size", addressCache::getSize);
+        Metrics.gauge(prefix + "addressCache.hits", addressCache::getHits);
+        Metrics.gauge(prefix + "addressCache.misses", addressCache::getMisses);
+
+        try {
+            outbox = new PersistenceOutbox(Paths.get(centre.localFile("hcms.outbox.file", "hcms-outbox.log")),
+                db, this::applyOutboxEntry);
+            Metrics.gauge(prefix + "outbox.depth", outbox::getDepth);
+            Metrics.gauge(prefix + "outbox.drainRate", outbox::getDrainRate);
+            Metrics.gauge(prefix + "outbox.drained", outbox::getDrainedCount);
+            Metrics.gauge(prefix + "outbox.failures", outbox::getFailureCount);
+            Metrics.gauge(prefix + "outbox.setAside", outbox::getSetAsideCount);
+        } catch (IOException e) {
+            System.out.println("Error opening outbox, writes will go straight to the database: " + e.getMessage());
+        }
+
+        // Writes the database already holds are dropped, and nothing drains until the
+        // rest are restored, so the loaded rows and the replayed writes never overlap
+        if (outbox != null) {
+            outbox.skipSaved();
+        }
+        List<OutboxEntry> unsaved = outbox != null ? outbox.getPendingEntries() : new ArrayList<>();
+        for (OutboxEntry e : unsaved) {
+            countPending(e);
+        }
+        if (queries != null) {
+            // Pushdown mode loads nothing: members are read from the database when needed,
+            // with this desk's writes that are still in the outbox applied on top
+            this.nextHcNum = nextFreeHcNumber(unsaved);
+            if (outbox != null) {
+                queries.setOverlay(this::withUnsavedWrites);
+                outbox.start();
+            }
+            return;
+        }
         loadMembersFromDatabase();
-        
-        // Determine the next ID based on the last loaded member
-        if (members.isEmpty()) {
-            this.nextHcNum = 100001;
-        } else {
-            // Simple logic: grab the last member's ID and add 1
-            String lastId = members.get(members.size() - 1).getHCNumber();
-            this.nextHcNum = Integer.parseInt(lastId) + 1;
+        restoreUnsavedWrites(unsaved);
+        if (outbox != null) {
+            outbox.start();
+        }
+        this.nextHcNum = nextHcNumberAfterLoad();
+
+        // The rules may have changed since the categories were last worked out
+        int reclassified = reclassifyBloodPressure();
+        if (reclassified > 0) {
+            System.out.println("Blood pressure rules changed: " + reclassified + " members reclassified.");
+        }
+
+        Metrics.gauge(prefix + "consultations.due", () -> store != null
+            ? store.count(slot -> !store.consultationAt(slot)) : scheduler.getDue().size());
+        Metrics.gauge(prefix + "consultations.queued", scheduler::getQueued);
+        scheduler.start(Long.getLong("hcms.consultation.intervalSec", 60));
+
+        int riskHour = Integer.getInteger("hcms.risk.hour", 2);
+        if (riskHour >= 0 && riskHour < 24) {
+            startNightlyRiskScoring(riskHour);
         }
     }
     
+    /**
+     * Works out the next HC Number without loading the members: one past the
+     * highest in the database or still waiting in the outbox.
+     */
+    private int nextFreeHcNumber(List<OutboxEntry> unsaved) {
+        int max = centre.getFirstHcNumber() - 1;
+        try {
+            max = Math.max(max, queries.maxHcNumber());
+        } catch (SQLException e) {
+            System.out.println("Error reading from database: " + e.getMessage());
+        }
+        for (OutboxEntry e : unsaved) {
+            if (OutboxEntry.INSERT.equals(e.getType()) && Centre.codeOf(e.getValues()[0]) == centre.getCode()) {
+                max = Math.max(max, Integer.parseInt(e.getValues()[0].trim()));
+            }
+        }
+        return max + 1;
+    }
+
+    /**
+     * Works out the next HC Number from the loaded members: one past the
+     * highest in the centre's range. The last member is not necessarily the
+     * highest (e.g. one restored from the outbox, or outside the range).
+     */
+    private int nextHcNumberAfterLoad() {
+        int max = centre.getFirstHcNumber() - 1;
+        int count = store != null ? store.size() : members.size();
+        for (int i = 0; i < count; i++) {
+            String hc = store != null ? store.hcNumberAt(i) : members.get(i).getHCNumber();
+            if (Centre.codeOf(hc) == centre.getCode()) {
+                max = Math.max(max, Integer.parseInt(hc.trim()));
+            }
+        }
+        return max + 1;
+    }
+
     private void loadMembersFromDatabase() {
-        String sql = "SELECT * FROM Members";
+        // Addresses are left out (and fetched on demand) unless -Dhcms.lazyAddress=false
+        boolean lazyAddress = Boolean.parseBoolean(System.getProperty("hcms.lazyAddress", "true"));
+        // In HC Number order, which the reports list members in (the column is text, so cast it)
+        String sql = "SELECT " + SqlMemberQueries.HOT_COLUMNS + (lazyAddress ? "" : ", Address")
+            + " FROM Members ORDER BY " + db.getDialect().toInteger("HCNumber");
+        long loadStart = Metrics.start();
         
-        try (Connection conn = DBConnector.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        // Always from the primary: a lagging replica can miss writes that have
+        // already been saved and dropped from the outbox journal
+        try (Connection conn = db.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            long queryStart = Metrics.start();
+            ResultSet rs = stmt.executeQuery(sql);
+            Metrics.DB_QUERY.recordSince(queryStart);
 
             while (rs.next()) {
                 // Reconstruct the object from the database row
-                HCMember m = new HCMember(
-                    rs.getString("HCNumber"),
-                    rs.getString("Forename"),
-                    rs.getString("Surname"),
-                    rs.getString("Gender").charAt(0),
-                    rs.getInt("Age"),
-                    rs.getDouble("Weight"),
-                    rs.getString("Address")
-                );
-                
-                // Set the non-constructor fields manually
-                // Note: You may need to add setters for these in HCMember if they are private
-                // m.setBloodPressure(rs.getString("BloodPressure")); 
-                // m.setVisitTally(rs.getInt("VisitTally"));
-                m.setFConsultation(rs.getBoolean("FConsultation"));
-                
-                members.add(m);
-            }
-            System.out.println("Database loaded: " + members.size() + " members found.");
+                addToMemory(SqlMemberQueries.readMember(rs, lazyAddress ? addressCache : null));
+            }
+            rs.close();
+            Metrics.LOAD.recordSince(loadStart);
+            System.out.println((centre.getCode() == 0 ? "" : centre.getName() + ": ")
+                + "Database loaded: " + members.size() + " members found.");
 
         } catch (SQLException e) {
             System.out.println("Error loading from database: " + e.getMessage());
@@ -79,24 +258,327 @@ public class MemberManager {
      * @param address  Member's address.
      * @return The newly created HCMember object.
      */
+    @Override
     public HCMember addMember(String forename, String surname, char gender, int age, double weight, String address) {
-        String id = String.valueOf(nextHcNum++);
-        HCMember newMember = new HCMember(id, forename, surname, gender, age, weight, address);
-        
-        // 1. Add to local memory 
-        members.add(newMember);
-        // 2. Add to SQL Database
+        HCMember newMember = createMember(forename, surname, gender, age, weight, address);
+        // 2. Queue for the SQL Database (the console never waits for the network)
         saveToDatabase(newMember);
+        // 3. Warn if the person looks already enrolled (-Dhcms.dedup.onInsert)
+        checkForDuplicates(newMember);
         
         return newMember;
     }
 
-    private void saveToDatabase(HCMember m) {
+    /**
+     * Adds a new member like addMember, but lets the caller know when the
+     * member has actually reached the database.
+     * @return A future completed with the new member once its row is saved.
+     */
+    public CompletableFuture<HCMember> addMemberAsync(String forename, String surname, char gender, int age, double weight, String address) {
+        HCMember newMember = createMember(forename, surname, gender, age, weight, address);
+        checkForDuplicates(newMember);
+        return saveToDatabase(newMember).thenApply(v -> newMember);
+    }
+
+    private HCMember createMember(String forename, String surname, char gender, int age, double weight, String address) {
+        lock.writeLock().lock();
+        try {
+            if (nextHcNum > centre.getLastHcNumber()) {
+                throw new IllegalStateException(centre + " has run out of HC Numbers");
+            }
+            String id = String.valueOf(nextHcNum++);
+            HCMember newMember = new HCMember(id, forename, surname, gender, age, weight, address);
+            
+            // 1. Add to local memory 
+            addToMemory(newMember);
+            membershipVersion.incrementAndGet();
+            return newMember;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a member to the list and the lookup index and starts listening to it.
+     * In off-heap mode the member is copied into the store instead.
+     * Callers adding after start-up must hold the write lock.
+     */
+    private void addToMemory(HCMember m) {
+        if (queries != null) {
+            // Pushdown mode keeps nothing in memory
+            m.setListener(this);
+            return;
+        }
+        if (m.isFConsultation() && m.getConsultationDue() == null) {
+            m.setConsultationDue(ConsultationScheduler.anniversaryAfter(m.getHCNumber(), LocalDate.now()));
+        }
+        m.setListener(this);
+        members.add(m);
+        if (store == null) {
+            index.put(m.getHCNumber(), m);
+        }
+        if (duplicateIndex != null) {
+            duplicateIndex.computeIfAbsent(DuplicateDetector.insertKey(m), k -> ConcurrentHashMap.newKeySet())
+                .add(m.getHCNumber());
+        }
+        scheduler.track(m);
+    }
+
+    /**
+     * Copies a member changed without notification back to the off-heap store.
+     * Heap members need nothing more.
+     */
+    private void written(HCMember m) {
+        if (store != null) {
+            store.update(m);
+        }
+    }
+
+    /**
+     * Runs a scan of the member list under the read lock.
+     */
+    private <T> T read(Supplier<T> scan) {
+        lock.readLock().lock();
+        try {
+            return scan.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the new member in the outbox; the drainer inserts it later.
+     * Falls back to writing straight to the database if the outbox is unusable.
+     * @return A future completed when the row is in the database.
+     */
+    private CompletableFuture<Void> saveToDatabase(HCMember m) {
+        if (outbox != null) {
+            try {
+                return outbox.submit(OutboxEntry.insert(m));
+            } catch (IOException e) {
+                System.out.println("Error writing to outbox: " + e.getMessage());
+            }
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try (Connection conn = db.getConnection()) {
+            insertMember(conn, m);
+            db.recordWrite();
+            System.out.println("Member saved to SQL Server.");
+            result.complete(null);
+        } catch (SQLException e) {
+            System.out.println("Error saving to database: " + e.getMessage());
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Performs one outbox write. Called by the outbox drainer thread.
+     * Nothing in memory is changed here, as the transaction may still roll back.
+     * @return What to change in memory once the write has committed, or null.
+     */
+    private Runnable applyOutboxEntry(Connection conn, OutboxEntry entry) throws SQLException {
+        switch (entry.getType()) {
+            case OutboxEntry.INSERT -> insertMember(conn, entry.toMember());
+            case OutboxEntry.UPDATE -> { return updateMember(conn, entry); }
+            case OutboxEntry.RESET_CONSULTATIONS -> { return resetConsultationsInDatabase(conn); }
+            case OutboxEntry.EXPIRE_CONSULTATIONS -> { return expireConsultationsInDatabase(conn, entry.getValues()); }
+            case OutboxEntry.SET_BLOOD_PRESSURES -> { return setBloodPressuresInDatabase(conn, entry.getValues()); }
+            default -> throw new SQLException("Unknown outbox entry type: " + entry.getType(), "HY000");
+        }
+        return null;
+    }
+
+    /**
+     * Writes one changed field using an optimistic (version checked) update.
+     * If another desk changed the row in the meantime, the merged row is taken
+     * on locally as well, unless more local changes to that member are queued.
+     * Pushdown mode holds no members, so the version the desk read is taken from
+     * the entry (moved on past this desk's own queued writes to the member).
+     * @return Takes the new version (and any merged row) on in memory.
+     */
+    private Runnable updateMember(Connection conn, OutboxEntry entry) throws SQLException {
+        String[] v = entry.getValues();
+        String hcNumber = v[0];
+        MemberField field = MemberField.valueOf(v[1]);
+        HCMember m = queries != null ? null : lookup(hcNumber);
+        long read = v.length > 3 ? Long.parseLong(v[3]) : -1; // -1 (older entries): re-read the row
+        long expected = read;
+        if (m != null) {
+            expected = m.getVersion();
+        } else {
+            long[] own = ownVersions.get(hcNumber);
+            if (own != null && own[0] == read) {
+                expected = own[1];
+            }
+        }
+
+        OptimisticUpdater.Result result = OptimisticUpdater.update(conn, hcNumber, field, v[2], expected);
+        if (m == null) {
+            if (queries == null || read < 0) return null;
+            return () -> ownVersions.put(hcNumber, new long[] {read, result.version});
+        }
+        return () -> takeOn(m, result);
+    }
+
+    /**
+     * Takes a committed update on in memory: the new version, and the merged
+     * row if another desk had changed the member, unless more local changes
+     * to it are queued.
+     */
+    private void takeOn(HCMember m, OptimisticUpdater.Result result) {
+        String hcNumber = m.getHCNumber();
+        m.setVersion(result.version);
+
+        if (result.merged != null && countPendingUpdates(hcNumber) <= 1) {
+            OptimisticUpdater.Row row = result.merged;
+            // An address that is not loaded stays that way; the cache gets the new one
+            addressCache.put(hcNumber, row.address);
+            m.restoreState(row.visitTally, row.bloodPressure, row.fConsultation, row.weight, row.age,
+                m.isAddressLoaded() ? row.address : null);
+            m.setConsultationDue(row.consultationDue);
+            m.setReading(row.systolic, row.diastolic);
+            scheduler.track(m);
+            for (MemberField f : MemberField.values()) {
+                fieldVersions.incrementAndGet(f.ordinal());
+            }
+        }
+        written(m);
+    }
+
+    /**
+     * Counts the queued UPDATE entries for a member (including one being applied).
+     */
+    private int countPendingUpdates(String hcNumber) {
+        return pendingUpdates.getOrDefault(hcNumber, 0);
+    }
+
+    /**
+     * Counts an UPDATE entry as pending for its member until it is written
+     * (or given up on), which is when its future completes.
+     */
+    private void countPending(OutboxEntry entry) {
+        if (!OutboxEntry.UPDATE.equals(entry.getType())) return;
+        String hcNumber = entry.getValues()[0];
+        pendingUpdates.merge(hcNumber, 1, Integer::sum);
+        entry.getFuture().whenComplete((r, e) ->
+            pendingUpdates.computeIfPresent(hcNumber, (hc, n) -> {
+                if (n > 1) return n - 1;
+                ownVersions.remove(hc);
+                return null;
+            }));
+    }
+
+    private Runnable resetConsultationsInDatabase(Connection conn) throws SQLException {
+        String sql = "UPDATE Members SET FConsultation = ?, Version = Version + 1";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setBoolean(1, false);
+            pstmt.executeUpdate();
+        }
+        // Every row moved on one version, so keep the local versions in step
+        if (queries != null) return null;
+        return () -> read(() -> {
+            for (HCMember m : members) {
+                m.setVersion(m.getVersion() + 1);
+                written(m);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Clears the consultation flag of a batch of members in one JDBC batch.
+     * Rows already cleared (e.g. at another desk) are left alone.
+     */
+    private Runnable expireConsultationsInDatabase(Connection conn, String[] hcNumbers) throws SQLException {
+        String sql = "UPDATE Members SET FConsultation = ?, Version = Version + 1 WHERE HCNumber = ? AND FConsultation = ?";
+        int[] counts;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (String hc : hcNumbers) {
+                pstmt.setBoolean(1, false);
+                pstmt.setString(2, hc);
+                pstmt.setBoolean(3, true);
+                pstmt.addBatch();
+            }
+            counts = pstmt.executeBatch();
+        }
+        return bumpVersions(List.of(hcNumbers), counts);
+    }
+
+    /**
+     * Writes a batch of recomputed blood pressure categories in one JDBC batch.
+     * @param values HC Number, category pairs.
+     */
+    private Runnable setBloodPressuresInDatabase(Connection conn, String[] values) throws SQLException {
+        String sql = "UPDATE Members SET BloodPressure = ?, Version = Version + 1 WHERE HCNumber = ?";
+        List<String> hcNumbers = new ArrayList<>();
+        int[] counts;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i + 1 < values.length; i += 2) {
+                pstmt.setString(1, values[i + 1]);
+                pstmt.setString(2, values[i]);
+                pstmt.addBatch();
+                hcNumbers.add(values[i]);
+            }
+            counts = pstmt.executeBatch();
+        }
+        return bumpVersions(hcNumbers, counts);
+    }
+
+    /**
+     * Returns the action keeping the local versions in step with the rows a
+     * batch update changed, to run once it has committed.
+     */
+    private Runnable bumpVersions(List<String> hcNumbers, int[] counts) {
+        if (queries != null) return null;
+        return () -> {
+            for (int i = 0; i < hcNumbers.size(); i++) {
+                HCMember m = lookup(hcNumbers.get(i));
+                if (m != null && (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO)) {
+                    m.setVersion(m.getVersion() + 1);
+                    written(m);
+                }
+            }
+        };
+    }
+
+    /**
+     * Queues a changed member field for the database.
+     * Falls back to writing straight to the database if the outbox is unusable.
+     */
+    private void persistChange(OutboxEntry entry) {
+        if (outbox != null) {
+            countPending(entry);
+            try {
+                outbox.submit(entry);
+                return;
+            } catch (IOException e) {
+                System.out.println("Error writing to outbox: " + e.getMessage());
+            }
+        }
+        try (Connection conn = db.getConnection()) {
+            Runnable afterCommit = applyOutboxEntry(conn, entry);
+            db.recordWrite();
+            if (afterCommit != null) {
+                afterCommit.run();
+            }
+            entry.getFuture().complete(null);
+        } catch (SQLException e) {
+            System.out.println("Error saving to database: " + e.getMessage());
+            entry.getFuture().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Inserts a member row. Does nothing if the row is already there, so an
+     * outbox entry replayed after a crash cannot create a duplicate.
+     */
+    private void insertMember(Connection conn, HCMember m) throws SQLException {
         String sql = "INSERT INTO Members (HCNumber, Forename, Surname, Gender, Age, Weight, Address, BloodPressure, VisitTally, FConsultation) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                     "SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM Members WHERE HCNumber = ?)";
         
-        try (Connection conn = DBConnector.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setString(1, m.getHCNumber());
             pstmt.setString(2, m.getForename());
@@ -108,14 +590,180 @@ public class MemberManager {
             pstmt.setString(8, m.getBloodPressure());
             pstmt.setInt(9, m.getVisitTally());
             pstmt.setBoolean(10, m.isFConsultation());
+            pstmt.setString(11, m.getHCNumber());
             
+            long insertStart = Metrics.start();
             pstmt.executeUpdate();
-            System.out.println("Member saved to SQL Server.");
-            
-        } catch (SQLException e) {
-            System.out.println("Error saving to database: " + e.getMessage());
+            Metrics.DB_INSERT.recordSince(insertStart);
+        }
+    }
+
+    /**
+     * Re-applies writes that were still waiting in the outbox when the program
+     * last stopped, so memory matches what the database will hold once they
+     * drain: unsaved members are added (so their IDs are not reused) and
+     * unsaved field changes are applied to the loaded members.
+     */
+    private void restoreUnsavedWrites(List<OutboxEntry> unsaved) {
+        for (OutboxEntry e : unsaved) {
+            if (OutboxEntry.INSERT.equals(e.getType())) {
+                if (lookup(e.getValues()[0]) == null) {
+                    addToMemory(e.toMember());
+                }
+            } else {
+                replay(e, this::lookup, members);
+            }
+        }
+    }
+
+    /**
+     * Applies an unsaved write other than an INSERT to the members it covers.
+     * @param find Finds one of the members written to, or returns null.
+     * @param all  The members a write to every member covers.
+     */
+    private void replay(OutboxEntry e, Function<String, HCMember> find, List<HCMember> all) {
+        String[] v = e.getValues();
+        switch (e.getType()) {
+            case OutboxEntry.UPDATE -> {
+                HCMember m = find.apply(v[0]);
+                if (m != null) {
+                    restoreField(m, MemberField.valueOf(v[1]), v[2]);
+                }
+            }
+            case OutboxEntry.RESET_CONSULTATIONS -> {
+                for (HCMember m : all) {
+                    restoreField(m, MemberField.CONSULTATION, "false");
+                }
+            }
+            case OutboxEntry.SET_BLOOD_PRESSURES -> {
+                for (int i = 0; i + 1 < v.length; i += 2) {
+                    HCMember m = find.apply(v[i]);
+                    if (m != null) {
+                        restoreField(m, MemberField.BLOOD_PRESSURE, v[i + 1]);
+                    }
+                }
+            }
+            case OutboxEntry.EXPIRE_CONSULTATIONS -> {
+                for (String hc : v) {
+                    HCMember m = find.apply(hc);
+                    if (m != null) {
+                        restoreField(m, MemberField.CONSULTATION, "false");
+                    }
+                }
+            }
+            default -> { }
         }
     }
+
+    /**
+     * Pushdown mode: reads members from the database and applies this desk's
+     * writes to them that are still waiting in the outbox, so the desk sees
+     * its own changes before they are saved (or while the database is down).
+     * No write is saved during the read, so none is counted twice.
+     */
+    private List<HCMember> withUnsavedWrites(SqlMemberQueries.RowReader reader) throws SQLException {
+        return outbox.readConsistently(pending -> {
+            List<HCMember> found = reader.read();
+            if (pending.isEmpty() || found.isEmpty()) return found;
+            Map<String, HCMember> byHcNumber = new HashMap<>();
+            for (HCMember m : found) {
+                byHcNumber.put(m.getHCNumber(), m);
+            }
+            for (OutboxEntry e : pending) {
+                if (!OutboxEntry.INSERT.equals(e.getType())) {
+                    replay(e, byHcNumber::get, found);
+                }
+            }
+            return found;
+        });
+    }
+
+    /**
+     * Pushdown mode: builds a member added at this desk but not saved yet,
+     * with the later unsaved writes to it applied.
+     * @return The member, or null if there is no unsaved INSERT for it.
+     */
+    private HCMember unsavedMember(String hcNumber, List<OutboxEntry> pending) {
+        HCMember m = null;
+        for (OutboxEntry e : pending) {
+            if (m == null) {
+                if (OutboxEntry.INSERT.equals(e.getType()) && e.getValues()[0].equals(hcNumber)) {
+                    m = e.toMember();
+                    m.setListener(this);
+                }
+            } else if (!OutboxEntry.INSERT.equals(e.getType())) {
+                HCMember added = m;
+                replay(e, hc -> hc.equals(hcNumber) ? added : null, List.of(added));
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Applies a stored field value to a member without queueing it again.
+     * For VISITS the value is the number of visits to add.
+     */
+    private void restoreField(HCMember m, MemberField field, String value) {
+        int visits = m.getVisitTally();
+        String bp = m.getBloodPressure();
+        boolean consultation = m.isFConsultation();
+        double weight = m.getWeight();
+        int age = m.getAge();
+        String address = null; // unchanged
+        switch (field) {
+            case VISITS -> visits += Integer.parseInt(value);
+            case BLOOD_PRESSURE -> bp = value;
+            case CONSULTATION -> consultation = Boolean.parseBoolean(value);
+            case CONSULTATION_DUE -> m.setConsultationDue(value != null ? LocalDate.parse(value) : null);
+            case BP_READING -> {
+                int[] reading = BloodPressureRules.parseReading(value);
+                m.setReading(reading[0], reading[1]);
+            }
+            case WEIGHT -> weight = Double.parseDouble(value);
+            case AGE -> age = Integer.parseInt(value);
+            case ADDRESS -> address = value;
+        }
+        m.restoreState(visits, bp, consultation, weight, age, address);
+        written(m);
+        if (queries == null && (field == MemberField.CONSULTATION || field == MemberField.CONSULTATION_DUE)) {
+            scheduler.track(m);
+        }
+    }
+
+    /**
+     * Gives queued database writes a few seconds to finish before the program exits.
+     * Anything left is kept in the outbox and saved on the next start.
+     */
+    @Override
+    public void close() {
+        scheduler.close();
+        if (riskTimer != null) {
+            riskTimer.shutdownNow();
+        }
+        if (outbox != null) {
+            outbox.close(5000);
+        }
+        if (store != null) {
+            store.close();
+        }
+        if (queries != null) {
+            queries.close();
+        }
+    }
+
+    /**
+     * Returns the centre whose members these are.
+     */
+    public Centre getCentre() {
+        return centre;
+    }
+
+    /**
+     * Returns the persistence outbox (for depth and drain-rate reporting), or null.
+     */
+    public PersistenceOutbox getOutbox() {
+        return outbox;
+    }
    
 
     /**
@@ -123,23 +771,115 @@ public class MemberManager {
      * * @param hcNumber The ID string to search for.
      * @return The HCMember object if found, or null if not found.
      */
+    @Override
     public HCMember findMemberByHCNumber(String hcNumber) {
-        for (HCMember m : members) {
-            if (m.getHCNumber().equals(hcNumber)) {
-                return m;
-            }
+        HCMember m = lookup(hcNumber);
+        if (m != null) {
+            Metrics.increment(Metrics.LOOKUP_HIT);
+            return m;
         }
+        Metrics.increment(Metrics.LOOKUP_MISS);
         return null; // Search failed
     }
 
+    /**
+     * Finds a member for the system's own use (draining, replay), without
+     * counting it in the lookup metrics.
+     */
+    private HCMember lookup(String hcNumber) {
+        if (queries != null && outbox != null) {
+            try {
+                // A member added at this desk may still be waiting in the outbox
+                return outbox.readConsistently(pending -> {
+                    HCMember m = queries.find(hcNumber);
+                    return m != null ? m : unsavedMember(hcNumber, pending);
+                });
+            } catch (SQLException e) {
+                System.out.println("Error finding member: " + e.getMessage());
+                return null;
+            }
+        }
+        if (queries != null) {
+            return queries.find(hcNumber);
+        }
+        return store != null ? store.find(hcNumber) : index.get(hcNumber);
+    }
+
+    /**
+     * Makes sure the addresses of these members are at hand, fetching any
+     * that are not in batches. Call before showing or exporting many addresses.
+     */
+    @Override
+    public void loadAddresses(List<HCMember> members) {
+        addressCache.prefetch(members);
+    }
+
+    /**
+     * Reads the addresses of these members in batches, leaving the cache as it is
+     * (for jobs such as deduplication that read more addresses than it holds).
+     */
+    @Override
+    public Map<String, String> readAddresses(List<HCMember> members) {
+        return addressCache.read(members);
+    }
+
     /**
      * Returns the full list of members.
      * @return A List of all HCMember objects.
      */
+    @Override
     public List<HCMember> getAllMembers() {
         return members;
     }
 
+    // =========================================================================
+    // Change Tracking
+    // =========================================================================
+
+    /**
+     * Bumps the version of the changed field so cached reports built on it go stale,
+     * and queues the change for the database.
+     */
+    @Override
+    public void memberChanged(HCMember member, MemberField field) {
+        if (store != null) {
+            store.update(member, field);
+        }
+        fieldVersions.incrementAndGet(field.ordinal());
+        persistChange(OutboxEntry.update(member, field));
+
+        if (field == MemberField.CONSULTATION) {
+            if (member.isFConsultation()) {
+                // The next consultation falls due a year after this one
+                member.setConsultationDue(LocalDate.now().plusYears(1));
+                memberChanged(member, MemberField.CONSULTATION_DUE);
+            }
+            if (queries == null) {
+                scheduler.track(member);
+            }
+        }
+    }
+
+    /**
+     * Returns the data version a report depends on: the membership version plus
+     * the versions of every field it reads. Each counter only ever increases, so
+     * the sum changes whenever any of them does.
+     */
+    private long versionOf(MemberField... fields) {
+        long version = membershipVersion.get();
+        for (MemberField f : fields) {
+            version += fieldVersions.get(f.ordinal());
+        }
+        return version;
+    }
+
+    /**
+     * Returns the cache holding the stats report results (for hit-rate stats).
+     */
+    public ReportCache getReportCache() {
+        return reportCache;
+    }
+
     // =========================================================================
     // Filter Methods
     // =========================================================================
@@ -149,7 +889,20 @@ public class MemberManager {
      * @param gender 'M' or 'F'.
      * @return A filtered list of members.
      */
+    @Override
     public List<HCMember> getMembersByGender(char gender) {
+        if (queries != null) return queries.byGender(gender);
+        return reportCache.get("gender:" + gender, versionOf(), () -> read(() -> scanMembersByGender(gender)));
+    }
+
+    private List<HCMember> scanMembersByGender(char gender) {
+        long start = Metrics.start();
+        if (store != null) {
+            // Test the records in place; only the matches become objects
+            List<HCMember> matches = store.filter(slot -> store.genderAt(slot) == gender);
+            Metrics.FILTER_GENDER.recordSince(start);
+            return matches;
+        }
         List<HCMember> filteredList = new ArrayList<>();
         // Loop through every member in the main list
         for (HCMember m : members) {
@@ -158,6 +911,7 @@ public class MemberManager {
                 filteredList.add(m);
             }
         }
+        Metrics.FILTER_GENDER.recordSince(start);
         return filteredList;
     }
 
@@ -165,7 +919,21 @@ public class MemberManager {
      * Retrieves a list of members with High blood pressure.
      * @return A filtered list of members.
      */
+    @Override
     public List<HCMember> getHighBloodPressureMembers() {
+        if (queries != null) return queries.highBloodPressure();
+        return reportCache.get("highBloodPressure", versionOf(MemberField.BLOOD_PRESSURE),
+            () -> read(this::scanHighBloodPressureMembers));
+    }
+
+    private List<HCMember> scanHighBloodPressureMembers() {
+        long start = Metrics.start();
+        if (store != null) {
+            // Test the records in place; only the matches become objects
+            List<HCMember> matches = store.filter(slot -> store.bloodPressureCodeAt(slot) == OffHeapMemberStore.BP_HIGH);
+            Metrics.FILTER_HIGH_BP.recordSince(start);
+            return matches;
+        }
         List<HCMember> filteredList = new ArrayList<>();
         
         for (HCMember m : members) {
@@ -174,6 +942,7 @@ public class MemberManager {
                 filteredList.add(m);
             }
         }
+        Metrics.FILTER_HIGH_BP.recordSince(start);
         return filteredList;
     }
     
@@ -181,15 +950,31 @@ public class MemberManager {
      * Retrieves members who haven't hadthier consultaion.
      * @return A list of members due for consultation.
      */
+    @Override
     public List<HCMember> getMembersDueForConsultation() {
+        if (queries != null) return queries.dueForConsultation();
+        return reportCache.get("dueConsultation", versionOf(MemberField.CONSULTATION),
+            () -> read(this::collectMembersDueForConsultation));
+    }
+
+    private List<HCMember> collectMembersDueForConsultation() {
+        long start = Metrics.start();
+        if (store != null) {
+            // Test the records in place; only the matches become objects
+            List<HCMember> matches = store.filter(slot -> !store.consultationAt(slot));
+            Metrics.FILTER_CONSULTATION.recordSince(start);
+            return matches;
+        }
         List<HCMember> filteredList = new ArrayList<>();
-        
-        for (HCMember m : members) {
-            // Check if consultation status is false
-            if (!m.isFConsultation()) {
+
+        // The scheduler keeps the set of due members, so no scan is needed
+        for (String hc : scheduler.getDue()) {
+            HCMember m = index.get(hc);
+            if (m != null) {
                 filteredList.add(m);
             }
         }
+        Metrics.FILTER_CONSULTATION.recordSince(start);
         return filteredList;
     }
     
@@ -198,7 +983,21 @@ public class MemberManager {
      * @param threshold The number of visits.
      * @return A list of members with low visits.
      */
+    @Override
     public List<HCMember> getMembersWithLowVisits(int threshold) {
+        if (queries != null) return queries.lowVisits(threshold);
+        return reportCache.get("lowVisits:" + threshold, versionOf(MemberField.VISITS),
+            () -> read(() -> scanMembersWithLowVisits(threshold)));
+    }
+
+    private List<HCMember> scanMembersWithLowVisits(int threshold) {
+        long start = Metrics.start();
+        if (store != null) {
+            // Test the records in place; only the matches become objects
+            List<HCMember> matches = store.filter(slot -> store.visitsAt(slot) < threshold);
+            Metrics.FILTER_LOW_VISITS.recordSince(start);
+            return matches;
+        }
         List<HCMember> filteredList = new ArrayList<>();
         
         for (HCMember m : members) {
@@ -206,23 +1005,308 @@ public class MemberManager {
                 filteredList.add(m);
             }
         }
+        Metrics.FILTER_LOW_VISITS.recordSince(start);
         return filteredList;
     }
 
+    /**
+     * Runs every stats report in one pass over the members, split across all
+     * cores, instead of one full scan per report. The individual results are
+     * also stored in the report cache, so viewing any single report
+     * afterwards needs no further scan.
+     * @param visitThreshold Visit count below which a member counts as low visit.
+     * @return The results and counts of every report.
+     */
+    @Override
+    public StatsPack runAllReports(int visitThreshold) {
+        long start = Metrics.start();
+        if (queries != null) {
+            // Pushdown mode: each report is its own indexed query, read as it is used
+            return new StatsPack(visitThreshold, queries.count(), queries.byGender('M'), queries.byGender('F'),
+                queries.highBloodPressure(), queries.dueForConsultation(), queries.lowVisits(visitThreshold));
+        }
+        // Versions are read before the scan: a change during the pass just leaves the entry stale
+        long genderVersion = versionOf();
+        long bpVersion = versionOf(MemberField.BLOOD_PRESSURE);
+        long consultationVersion = versionOf(MemberField.CONSULTATION);
+        long visitsVersion = versionOf(MemberField.VISITS);
+
+        StatsPack pack;
+        if (store != null) {
+            // One in-place scan per report, so the results hold record slots rather than member copies
+            pack = read(() -> new StatsPack(visitThreshold, store.size(), scanMembersByGender('M'),
+                scanMembersByGender('F'), scanHighBloodPressureMembers(), collectMembersDueForConsultation(),
+                scanMembersWithLowVisits(visitThreshold)));
+        } else {
+            pack = read(() -> ForkJoinPool.commonPool().invoke(
+                new StatsPack.Task(members, 0, members.size(), visitThreshold)));
+        }
+
+        reportCache.put("gender:M", genderVersion, pack.getMales());
+        reportCache.put("gender:F", genderVersion, pack.getFemales());
+        reportCache.put("highBloodPressure", bpVersion, pack.getHighBloodPressure());
+        reportCache.put("dueConsultation", consultationVersion, pack.getDueConsultation());
+        reportCache.put("lowVisits:" + visitThreshold, visitsVersion, pack.getLowVisits());
+        Metrics.FILTER_ALL_REPORTS.recordSince(start);
+        return pack;
+    }
+
+    /**
+     * Returns the K members with the highest value of a field
+     * (e.g. the 50 most frequent visitors).
+     * The result is cached until that field changes or a member is added.
+     * @param field What to rank by.
+     * @param k     How many members to return.
+     * @return Up to K members, highest first.
+     */
+    @Override
+    public List<HCMember> getTopMembers(RankField field, int k) {
+        if (queries != null) return queries.top(field, k);
+        return reportCache.get("top:" + field + ":" + k, versionOf(field.getField()),
+            () -> read(() -> MemberRanking.topK(members, field, k)));
+    }
+
+    /**
+     * Expires the consultations of members whose due date has arrived.
+     * Called by the scheduler with small batches; the batch is saved with one
+     * outbox entry. Entries that went stale (consultation already expired, or
+     * booked again since) are skipped.
+     */
+    private void expireConsultations(List<String> hcNumbers, LocalDate today) {
+        List<String> expired = new ArrayList<>();
+        read(() -> {
+            for (String hc : hcNumbers) {
+                HCMember m = store != null ? store.find(hc) : index.get(hc);
+                if (m != null && m.isFConsultation() && m.getConsultationDue() != null
+                        && !m.getConsultationDue().isAfter(today)) {
+                    restoreField(m, MemberField.CONSULTATION, "false");
+                    expired.add(hc);
+                }
+            }
+            return null;
+        });
+        if (expired.isEmpty()) return;
+        fieldVersions.incrementAndGet(MemberField.CONSULTATION.ordinal());
+        persistChange(new OutboxEntry(OutboxEntry.EXPIRE_CONSULTATIONS, expired.toArray(new String[0])));
+    }
+
+    /**
+     * Off-heap mode: lists the members whose consultation has fallen due by
+     * reading the records in place.
+     */
+    private List<String> scanExpiredConsultations(LocalDate today) {
+        return read(() -> {
+            List<String> found = new ArrayList<>();
+            long day = today.toEpochDay();
+            for (int slot = 0; slot < store.size(); slot++) {
+                if (store.consultationExpiredAt(slot, day)) {
+                    found.add(store.hcNumberAt(slot));
+                }
+            }
+            return found;
+        });
+    }
+
     /**
      * Resets the consultation status of ALL members to false.
+     * Consultations normally expire one member at a time on their due date;
+     * this is kept for a full manual reset.
      */
+    @Override
     public void resetAllConsultations() {
-        for (HCMember m : members) {
-            m.setFConsultation(false);
+        read(() -> {
+            if (queries != null) return null;
+            for (HCMember m : members) {
+                restoreField(m, MemberField.CONSULTATION, "false");
+            }
+            return null;
+        });
+        fieldVersions.incrementAndGet(MemberField.CONSULTATION.ordinal());
+        // One bulk statement rather than an update per member
+        persistChange(new OutboxEntry(OutboxEntry.RESET_CONSULTATIONS));
+    }
+
+    // =========================================================================
+    // Blood Pressure Rules
+    // =========================================================================
+
+    /**
+     * Re-reads the blood pressure rules file and, if the rules changed,
+     * recomputes every member's category.
+     * @return The number of members whose category changed.
+     * @throws IOException if the rules file cannot be read.
+     * @throws IllegalArgumentException if the rules are invalid.
+     */
+    @Override
+    public int reloadBloodPressureRules() throws IOException {
+        BloodPressureRules rules = BloodPressureRules.load(BloodPressureRules.configuredFile());
+        if (rules.equals(BloodPressureRules.current())) {
+            return 0;
+        }
+        BloodPressureRules.setCurrent(rules);
+        return reclassifyBloodPressure();
+    }
+
+    /**
+     * Recomputes every member's blood pressure category from their stored
+     * reading under the current rules. Members are classified in parallel;
+     * only the ones whose category changed are updated, and they are saved in
+     * batches of RECLASSIFY_BATCH (one outbox entry and JDBC batch each).
+     * Members without a stored reading keep their category.
+     * @return The number of members whose category changed.
+     */
+    public int reclassifyBloodPressure() {
+        // Pushdown desks hold no members; the in-memory server reclassifies
+        if (queries != null) return 0;
+        long start = Metrics.start();
+        BloodPressureRules rules = BloodPressureRules.current();
+        List<HCMember> changed = read(() -> members.parallelStream()
+            .filter(m -> {
+                String category = rules.classify(m.getSystolic(), m.getDiastolic());
+                return category != null && !category.equals(m.getBloodPressure());
+            })
+            .collect(Collectors.toList()));
+        if (changed.isEmpty()) return 0;
+
+        List<String> batch = new ArrayList<>();
+        read(() -> {
+            for (HCMember m : changed) {
+                String category = rules.classify(m.getSystolic(), m.getDiastolic());
+                restoreField(m, MemberField.BLOOD_PRESSURE, category);
+                batch.add(m.getHCNumber());
+                batch.add(category);
+                if (batch.size() == RECLASSIFY_BATCH * 2) {
+                    persistChange(new OutboxEntry(OutboxEntry.SET_BLOOD_PRESSURES, batch.toArray(new String[0])));
+                    batch.clear();
+                }
+            }
+            return null;
+        });
+        if (!batch.isEmpty()) {
+            persistChange(new OutboxEntry(OutboxEntry.SET_BLOOD_PRESSURES, batch.toArray(new String[0])));
+        }
+        fieldVersions.incrementAndGet(MemberField.BLOOD_PRESSURE.ordinal());
+        Metrics.histogram("bp.reclassify").recordSince(start);
+        return changed.size();
+    }
+
+    // =========================================================================
+    // Health Risk Scoring
+    // =========================================================================
+
+    /**
+     * Scores every member's health risk (see RiskKernel for the model) and
+     * keeps the scores for the at-risk report until the next run.
+     * Runs nightly, and can be run on demand.
+     * @return The number of members scored.
+     */
+    @Override
+    public int scoreHealthRisks() {
+        // Pushdown desks hold no members; the in-memory server scores them
+        if (queries != null) return 0;
+        long start = Metrics.start();
+        RiskScores scores = read(() -> RiskScoring.score(members));
+        riskScores = scores;
+        Metrics.histogram("risk.score").recordSince(start);
+        return scores.size();
+    }
+
+    /**
+     * Returns the members most at risk as of the last scoring run.
+     * @param k How many to return.
+     * @return Up to K entries, highest score first; empty if no run has happened yet.
+     */
+    @Override
+    public List<RiskScores.Entry> getAtRiskMembers(int k) {
+        RiskScores scores = riskScores;
+        return scores != null ? scores.top(k) : new ArrayList<>();
+    }
+
+    /**
+     * Scores the members every night at the given hour.
+     */
+    private void startNightlyRiskScoring(int hour) {
+        riskTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "risk-scoring");
+            t.setDaemon(true);
+            return t;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(hour, 0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        riskTimer.scheduleAtFixedRate(() -> {
+            try {
+                scoreHealthRisks();
+            } catch (RuntimeException e) {
+                System.out.println("Error scoring health risks: " + e.getMessage());
+            }
+        }, Duration.between(now, next).toMinutes(), TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    // =========================================================================
+    // Duplicate Detection
+    // =========================================================================
+
+    /**
+     * Looks for members enrolled more than once (see DuplicateDetector).
+     * Works on a copy of the member list, so members can be added meanwhile.
+     * @return Merge suggestions, most alike first; empty in pushdown mode.
+     */
+    @Override
+    public List<MergeSuggestion> findDuplicates() {
+        // Pushdown desks hold no members; the in-memory server runs the job
+        if (queries != null) return new ArrayList<>();
+        long start = Metrics.start();
+        List<MergeSuggestion> found = DuplicateDetector.configured().findDuplicates(snapshotMembers(), this::readAddresses);
+        Metrics.histogram("dedup.run").recordSince(start);
+        return found;
+    }
+
+    /**
+     * Returns a copy of the member list taken under the read lock.
+     */
+    List<HCMember> snapshotMembers() {
+        if (queries != null) return new ArrayList<>();
+        return read(() -> new ArrayList<>(members));
+    }
+
+    /**
+     * Compares a new member with the members sharing their surname code and
+     * gender, and warns about any that look like the same person.
+     * The member is still added: staff decide whether to merge.
+     * Does nothing unless -Dhcms.dedup.onInsert=true.
+     * @return The likely matches, most alike first.
+     */
+    public List<MergeSuggestion> checkForDuplicates(HCMember newMember) {
+        if (duplicateIndex == null) return new ArrayList<>();
+        Set<String> sameKey = duplicateIndex.get(DuplicateDetector.insertKey(newMember));
+        if (sameKey == null) return new ArrayList<>();
+        List<HCMember> candidates = new ArrayList<>();
+        for (String hcNumber : sameKey) {
+            HCMember m = store != null ? store.find(hcNumber) : index.get(hcNumber);
+            if (m != null) {
+                candidates.add(m);
+            }
+        }
+        // One batch for the addresses compared, read past the cache kept for the screens
+        List<MergeSuggestion> matches = DuplicateDetector.configured().matchesFor(newMember, candidates, this::readAddresses);
+        for (MergeSuggestion s : matches) {
+            Metrics.increment(Metrics.counter("dedup.insertMatches"));
+            System.out.printf("Warning: %s may already be enrolled as %s (similarity %.2f).\n",
+                newMember.getForename() + " " + newMember.getSurname(), s.getKeepHcNumber(), s.getScore());
         }
+        return matches;
     }
 
     /**
      * Gets the total number of registered members.
      * @return integer count.
      */
+    @Override
     public int getTotalCount() {
-        return members.size();
+        if (queries != null) return queries.count();
+        return read(members::size);
     }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+/*
+ * MemberPager.java
+ * Shows a member list one screen at a time: next, previous, jump to a page
+ * or quit. Only the rows on screen are read from the list, so a lazy result
+ * (pushdown mode, merged centres) is fetched page by page as it is viewed
+ * and a listing of a million members never has to be held or printed whole.
+ *
+ * With -Dhcms.pager.pageSize=0 the whole list is written without stopping,
+ * in large blocks.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.List;
+import java.util.Scanner;
+
+public class MemberPager {
+
+    private final Scanner scanner;
+    private final RowRenderer renderer = new RowRenderer();
+    /** Rows per screen, or 0 to write everything without stopping. */
+    private final int pageSize;
+
+    /**
+     * Constructor.
+     * @param scanner  Reads the paging commands.
+     * @param pageSize Rows per screen, or 0 to list without paging.
+     */
+    public MemberPager(Scanner scanner, int pageSize) {
+        this.scanner = scanner;
+        this.pageSize = Math.max(0, pageSize);
+    }
+
+    /**
+     * Lists members under the column header, a page at a time.
+     * @param members The members to show (read by index, only as far as viewed).
+     */
+    public void show(List<HCMember> members) {
+        System.out.flush();
+        int total = members.size();
+        if (pageSize == 0 || total <= pageSize) {
+            renderer.header();
+            for (HCMember m : members) {
+                renderer.row(m);
+            }
+            renderer.flush();
+            return;
+        }
+
+        int pages = (total + pageSize - 1) / pageSize;
+        int page = 0;
+        while (true) {
+            int from = page * pageSize;
+            int to = Math.min(from + pageSize, total);
+            renderer.header();
+            for (int i = from; i < to; i++) {
+                renderer.row(members.get(i));
+            }
+            renderer.text("Page ").text(String.valueOf(page + 1)).text(" of ").text(String.valueOf(pages))
+                .text(" (members ").text(String.valueOf(from + 1)).text("-").text(String.valueOf(to))
+                .text(" of ").text(String.valueOf(total)).text(")\n")
+                .text(page + 1 < pages ? "[N]ext (Enter)  [P]revious  [J]ump to page  [Q]uit: "
+                    : "[P]revious  [J]ump to page  [Q]uit (Enter): ");
+            renderer.flush();
+
+            String command = scanner.nextLine().trim().toUpperCase();
+            if (command.isEmpty() || command.equals("N")) {
+                if (page + 1 == pages) {
+                    return; // Past the last page ends the listing
+                }
+                page++;
+            } else if (command.equals("P")) {
+                if (page > 0) {
+                    page--;
+                } else {
+                    System.out.println("Already on the first page.");
+                }
+            } else if (command.startsWith("J")) {
+                page = askPage(command.substring(1).trim(), pages, page);
+            } else if (command.equals("Q")) {
+                return;
+            } else {
+                System.out.println("Please enter N, P, J or Q.");
+            }
+        }
+    }
+
+    /**
+     * Reads the page to jump to (from "J 12", or asked for).
+     * @return The chosen page (0 based), or the current page if the input is invalid.
+     */
+    private int askPage(String typed, int pages, int current) {
+        if (typed.isEmpty()) {
+            System.out.print("Page (1-" + pages + "): ");
+            typed = scanner.nextLine().trim();
+        }
+        try {
+            int page = Integer.parseInt(typed);
+            if (page >= 1 && page <= pages) {
+                return page - 1;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.out.println("Please enter a page between 1 and " + pages + ".");
+        return current;
+    }
+
+    /**
+     * Lists members with their risk scores, highest first (a short list, so without paging).
+     */
+    public void showScored(List<HCMember> members, List<Float> scores) {
+        System.out.flush();
+        for (int i = 0; i < members.size(); i++) {
+            renderer.scoredRow(i + 1, scores.get(i), members.get(i));
+        }
+        renderer.flush();
+    }
+
+    /**
+     * Lists merge suggestions: each pair's score and similarities, then the
+     * member to keep and the likely duplicate (a short list, so without paging).
+     * @param pairs The two members of each suggestion, keep first.
+     */
+    public void showSuggestions(List<MergeSuggestion> suggestions, List<HCMember[]> pairs) {
+        System.out.flush();
+        for (int i = 0; i < suggestions.size(); i++) {
+            MergeSuggestion s = suggestions.get(i);
+            renderer.text("#").text(String.valueOf(i + 1)).text("  similarity ").text(percent(s.getScore()))
+                .text("  (forename ").text(percent(s.getForenameSimilarity()))
+                .text(", surname ").text(percent(s.getSurnameSimilarity()))
+                .text(", address ").text(percent(s.getAddressSimilarity())).text(")\n")
+                .text("  keep:      ").row(pairs.get(i)[0])
+                .text("  duplicate: ").row(pairs.get(i)[1])
+                .text("      ").text(String.valueOf(pairs.get(i)[0].getAddress())).text("  /  ")
+                .text(String.valueOf(pairs.get(i)[1].getAddress())).text("\n");
+        }
+        renderer.flush();
+    }
+
+    private static String percent(double similarity) {
+        return Math.round(similarity * 100) + "%";
+    }
+
+    /**
+     * Lists ranked members (a short list, so without paging).
+     */
+    public void showRanked(List<HCMember> members, RankField field) {
+        System.out.flush();
+        int rank = 1;
+        for (HCMember m : members) {
+            renderer.rankedRow(rank++, field, m);
+        }
+        renderer.flush();
+    }
+}
\ No newline at end of file
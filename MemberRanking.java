@@ -0,0 +1,46 @@
+/*
+ * MemberRanking.java
+ * Top-K selection over members using a bounded heap.
+ * Picking the K highest of N members costs O(N log K) and only ever holds
+ * K members, instead of copying and sorting the whole list.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class MemberRanking {
+
+    private MemberRanking() {
+    }
+
+    /**
+     * Selects the K members with the highest value of a field.
+     * @param members The members to choose from.
+     * @param field   The value to rank by.
+     * @param k       How many members to return.
+     * @return Up to K members, highest value first.
+     */
+    public static List<HCMember> topK(Iterable<HCMember> members, RankField field, int k) {
+        if (k <= 0) return new ArrayList<>();
+
+        Comparator<HCMember> order = field.ascending();
+        // Min-heap: the head is the weakest of the current top K
+        PriorityQueue<HCMember> heap = new PriorityQueue<>(k + 1, order);
+        for (HCMember m : members) {
+            if (heap.size() < k) {
+                heap.add(m);
+            } else if (order.compare(m, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(m);
+            }
+        }
+
+        List<HCMember> ranked = new ArrayList<>(heap);
+        ranked.sort(Collections.reverseOrder(order));
+        return ranked;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+/*
+ * MemberService.java
+ * What the console needs from whatever holds the members: a single centre
+ * (MemberManager) or several centres at once (ShardedMemberManager).
+ */
+package HealthCentreMemberSystem;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public interface MemberService {
+
+    /**
+     * Creates a new member, gives it the next free HC Number and saves it.
+     * @return The newly created HCMember object.
+     */
+    HCMember addMember(String forename, String surname, char gender, int age, double weight, String address);
+
+    /**
+     * @return The member with this HC Number, or null if not found.
+     */
+    HCMember findMemberByHCNumber(String hcNumber);
+
+    /** @return Every member. */
+    List<HCMember> getAllMembers();
+
+    /** @return The total number of registered members. */
+    int getTotalCount();
+
+    List<HCMember> getMembersByGender(char gender);
+
+    List<HCMember> getHighBloodPressureMembers();
+
+    List<HCMember> getMembersDueForConsultation();
+
+    List<HCMember> getMembersWithLowVisits(int threshold);
+
+    /**
+     * @return Up to K members with the highest value of a field, highest first.
+     */
+    List<HCMember> getTopMembers(RankField field, int k);
+
+    /**
+     * Runs every stats report together.
+     */
+    StatsPack runAllReports(int visitThreshold);
+
+    /**
+     * Scores every member's health risk and keeps the scores for the at-risk report.
+     * @return The number of members scored.
+     */
+    int scoreHealthRisks();
+
+    /**
+     * @return Up to K members most at risk as of the last scoring run, highest first.
+     */
+    List<RiskScores.Entry> getAtRiskMembers(int k);
+
+    /**
+     * Looks for people enrolled more than once.
+     * @return Merge suggestions, most alike first.
+     */
+    List<MergeSuggestion> findDuplicates();
+
+    /**
+     * Makes sure the addresses of these members are at hand.
+     */
+    void loadAddresses(List<HCMember> members);
+
+    /**
+     * Reads the addresses of these members without keeping them in the address cache.
+     * @return HC Number to address; members whose address could not be read are missing.
+     */
+    Map<String, String> readAddresses(List<HCMember> members);
+
+    /**
+     * Resets the consultation status of ALL members to false.
+     */
+    void resetAllConsultations();
+
+    /**
+     * Re-reads the blood pressure rules file and recomputes the categories if they changed.
+     * @return The number of members whose category changed.
+     * @throws IOException if the rules file cannot be read.
+     */
+    int reloadBloodPressureRules() throws IOException;
+
+    /**
+     * Finishes queued writes (or keeps them for the next start) and releases resources.
+     */
+    void close();
+}
\ No newline at end of file
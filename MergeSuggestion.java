@@ -0,0 +1,63 @@
+/*
+ * MergeSuggestion.java
+ * Two enrolments that look like the same person, found by DuplicateDetector.
+ * The earlier enrolment (lower HC Number) is the one suggested to keep.
+ * Nothing is merged automatically: staff check the pair and decide.
+ */
+package HealthCentreMemberSystem;
+
+public class MergeSuggestion {
+
+    private final String keepHcNumber;
+    private final String duplicateHcNumber;
+    private final double score;
+    private final double forenameSimilarity;
+    private final double surnameSimilarity;
+    private final double addressSimilarity;
+
+    /**
+     * Constructor.
+     * The HC Numbers may be given in either order; the lower one is kept.
+     * @param score The weighted similarity of the pair (0-1).
+     */
+    MergeSuggestion(String hcNumberA, String hcNumberB, double score,
+                    double forenameSimilarity, double surnameSimilarity, double addressSimilarity) {
+        boolean aFirst = compareHcNumbers(hcNumberA, hcNumberB) <= 0;
+        this.keepHcNumber = aFirst ? hcNumberA : hcNumberB;
+        this.duplicateHcNumber = aFirst ? hcNumberB : hcNumberA;
+        this.score = score;
+        this.forenameSimilarity = forenameSimilarity;
+        this.surnameSimilarity = surnameSimilarity;
+        this.addressSimilarity = addressSimilarity;
+    }
+
+    /**
+     * Orders suggestions highest score first; ties by the HC Numbers.
+     */
+    static int byRank(MergeSuggestion a, MergeSuggestion b) {
+        int c = Double.compare(b.score, a.score);
+        if (c != 0) return c;
+        c = compareHcNumbers(a.keepHcNumber, b.keepHcNumber);
+        return c != 0 ? c : compareHcNumbers(a.duplicateHcNumber, b.duplicateHcNumber);
+    }
+
+    /**
+     * Compares HC Numbers numerically (centres' numbers differ in length).
+     */
+    private static int compareHcNumbers(String a, String b) {
+        return Long.compare(Long.parseLong(a.trim()), Long.parseLong(b.trim()));
+    }
+
+    public String getKeepHcNumber() { return keepHcNumber; }
+    public String getDuplicateHcNumber() { return duplicateHcNumber; }
+    public double getScore() { return score; }
+    public double getForenameSimilarity() { return forenameSimilarity; }
+    public double getSurnameSimilarity() { return surnameSimilarity; }
+    public double getAddressSimilarity() { return addressSimilarity; }
+
+    @Override
+    public String toString() {
+        return String.format("%s <- %s (%.2f: forename %.2f, surname %.2f, address %.2f)", keepHcNumber,
+            duplicateHcNumber, score, forenameSimilarity, surnameSimilarity, addressSimilarity);
+    }
+}
\ No newline at end of file
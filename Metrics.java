@@ -0,0 +1,245 @@
+/*
+ * Metrics.java
+ * Built-in instrumentation for the hot paths of the system.
+ * Holds the latency histograms, counters and gauges, publishes them as a JMX
+ * MBean and can optionally print them to the console at a fixed interval.
+ *
+ * Metrics are switched on with -Dhcms.metrics=true. When switched off the
+ * timing calls reduce to a check of a static final flag.
+ * The periodic dump is enabled with -Dhcms.metrics.logIntervalSec=<seconds>.
+ */
+package HealthCentreMemberSystem;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+public final class Metrics implements DynamicMBean {
+
+    /** True when instrumentation is switched on. */
+    public static final boolean ENABLED = Boolean.getBoolean("hcms.metrics");
+
+    /** The JMX name the metrics are published under. */
+    public static final String OBJECT_NAME = "HealthCentreMemberSystem:type=Metrics";
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, DoubleSupplier> GAUGES = new ConcurrentSkipListMap<>();
+
+    /** Per-histogram attributes published over JMX. */
+    private static final String[] HISTOGRAM_FIELDS = {
+        "count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros"
+    };
+
+    // =========================================================================
+    // Hot Path Metrics
+    // =========================================================================
+
+    public static final LatencyHistogram DB_CONNECT = histogram("db.connect");
+    public static final LatencyHistogram DB_QUERY = histogram("db.query");
+    public static final LatencyHistogram DB_INSERT = histogram("db.insert");
+    public static final LatencyHistogram LOAD = histogram("members.load");
+    public static final LatencyHistogram FILTER_GENDER = histogram("filter.gender");
+    public static final LatencyHistogram FILTER_HIGH_BP = histogram("filter.highBloodPressure");
+    public static final LatencyHistogram FILTER_CONSULTATION = histogram("filter.dueConsultation");
+    public static final LatencyHistogram FILTER_LOW_VISITS = histogram("filter.lowVisits");
+    public static final LatencyHistogram FILTER_ALL_REPORTS = histogram("filter.allReports");
+
+    public static final LongAdder LOOKUP_HIT = counter("lookup.hit");
+    public static final LongAdder LOOKUP_MISS = counter("lookup.miss");
+
+    static {
+        if (ENABLED) {
+            register();
+            long interval = Long.getLong("hcms.metrics.logIntervalSec", 0L);
+            if (interval > 0) {
+                startLogDump(interval);
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    // =========================================================================
+    // Registry
+    // =========================================================================
+
+    /**
+     * Returns the histogram with the given name, creating it if needed.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     */
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Registers (or replaces) a gauge that is read whenever metrics are reported.
+     */
+    public static void gauge(String name, DoubleSupplier supplier) {
+        GAUGES.put(name, supplier);
+    }
+
+    /**
+     * Returns a start timestamp for a timed operation, or 0 when disabled.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Increments a counter when metrics are enabled.
+     */
+    public static void increment(LongAdder counter) {
+        if (ENABLED) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Builds a readable report of every metric.
+     * @return Multi-line report string.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("---------------- Metrics ----------------\n");
+        for (LatencyHistogram h : HISTOGRAMS.values()) {
+            if (h.getCount() > 0) {
+                sb.append(h).append('\n');
+            }
+        }
+        for (Map.Entry<String, LongAdder> e : COUNTERS.entrySet()) {
+            sb.append(String.format("%-28s %d\n", e.getKey(), e.getValue().sum()));
+        }
+        for (Map.Entry<String, DoubleSupplier> e : GAUGES.entrySet()) {
+            sb.append(String.format("%-28s %.2f\n", e.getKey(), e.getValue().getAsDouble()));
+        }
+        return sb.toString();
+    }
+
+    private static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new Metrics(), name);
+            }
+        } catch (Exception e) {
+            System.out.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    private static void startLogDump(long intervalSeconds) {
+        ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> System.out.print(report()),
+            intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // =========================================================================
+    // JMX (DynamicMBean)
+    // Histograms are exposed as "<name>.count", "<name>.p99Micros" etc.
+    // =========================================================================
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (COUNTERS.containsKey(attribute)) {
+            return COUNTERS.get(attribute).sum();
+        }
+        if (GAUGES.containsKey(attribute)) {
+            return GAUGES.get(attribute).getAsDouble();
+        }
+        int dot = attribute.lastIndexOf('.');
+        LatencyHistogram h = dot > 0 ? HISTOGRAMS.get(attribute.substring(0, dot)) : null;
+        if (h != null) {
+            switch (attribute.substring(dot + 1)) {
+                case "count": return (double) h.getCount();
+                case "meanMicros": return h.getMean() / 1000.0;
+                case "p50Micros": return h.getPercentile(50) / 1000.0;
+                case "p90Micros": return h.getPercentile(90) / 1000.0;
+                case "p99Micros": return h.getPercentile(99) / 1000.0;
+                case "maxMicros": return h.getMax() / 1000.0;
+                default: break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String a : attributes) {
+            try {
+                list.add(new Attribute(a, getAttribute(a)));
+            } catch (AttributeNotFoundException e) {
+                // Unknown attributes are skipped, as the JMX contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("report".equals(actionName)) {
+            return report();
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName), "No such operation: " + actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attrs = new ArrayList<>();
+        for (String h : HISTOGRAMS.keySet()) {
+            for (String field : HISTOGRAM_FIELDS) {
+                attrs.add(new MBeanAttributeInfo(h + "." + field, "double", "Latency " + field, true, false, false));
+            }
+        }
+        for (String c : COUNTERS.keySet()) {
+            attrs.add(new MBeanAttributeInfo(c, "long", "Counter", true, false, false));
+        }
+        for (String g : GAUGES.keySet()) {
+            attrs.add(new MBeanAttributeInfo(g, "double", "Gauge", true, false, false));
+        }
+        MBeanOperationInfo[] ops = {
+            new MBeanOperationInfo("report", "Text report of all metrics", null, "java.lang.String", MBeanOperationInfo.INFO)
+        };
+        return new MBeanInfo(Metrics.class.getName(), "Health Centre hot-path metrics",
+            attrs.toArray(new MBeanAttributeInfo[0]), null, ops, null);
+    }
+}
\ No newline at end of file
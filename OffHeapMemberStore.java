@@ -0,0 +1,473 @@
+/*
+ * OffHeapMemberStore.java
+ * Keeps members outside the Java heap in memory-mapped files, so the heap
+ * (and GC pause times) stay flat however many members there are.
+ *
+ * Files (rebuilt from the database on every start):
+ *   <base>.dat   fixed-width 64 byte member records
+ *   <base>.heap  string side-heap for names and addresses
+ *   <base>.idx   HC Number -> record slot lookup table
+ *
+ * Filters and lookups read the records in place; an HCMember object is only
+ * created when a caller actually needs one, and changes made to it are
+ * written back through the MemberListener.
+ *
+ * Heap footprint: nothing is kept per member. Every find, and every element
+ * read from a filter result, creates a short-lived HCMember copy. Filter
+ * results (and so the cached reports) hold only record slots, 4 bytes per
+ * match. What stays on the heap is the cached addresses, the report cache
+ * and the nightly risk scores, which hold one small entry per member
+ * (-Dhcms.risk.hour=-1 turns them off).
+ */
+package HealthCentreMemberSystem;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+public class OffHeapMemberStore {
+
+    // =========================================================================
+    // Record Layout
+    // =========================================================================
+
+    private static final int RECORD_SIZE = 64;
+    private static final int HC_NUMBER = 0;    // int
+    private static final int GENDER = 4;       // byte
+    private static final int FLAGS = 5;        // byte, bit 0 = consultation done
+    private static final int BP = 6;           // byte, index into BP_CATEGORIES
+    private static final int AGE = 8;          // int
+    private static final int VISITS = 12;      // int
+    private static final int WEIGHT = 16;      // double
+    private static final int VERSION = 24;     // long
+    private static final int FORENAME = 32;    // long, side-heap offset
+    private static final int SURNAME = 40;     // long, side-heap offset
+    private static final int ADDRESS = 48;     // long, side-heap offset
+    private static final int DUE = 56;         // int, epoch day the consultation falls due
+    private static final int SYSTOLIC = 60;    // short, last reading (0 if none)
+    private static final int DIASTOLIC = 62;   // short
+
+    /** Stored blood pressure categories; anything else is stored as "none". */
+    private static final String[] BP_CATEGORIES = {"Normal", "High", "Low"};
+    private static final byte BP_NONE = 3;
+    public static final byte BP_HIGH = 1;
+
+    /** Records per mapped segment (64 MB). */
+    private static final int RECORDS_PER_SEGMENT = 1 << 20;
+    /** Bytes per mapped string heap segment. */
+    private static final int HEAP_SEGMENT_SIZE = 64 << 20;
+    /** Index entries per mapped index segment (16 MB). */
+    private static final int INDEX_PER_SEGMENT = 1 << 22;
+    /** Marks a missing string reference. */
+    private static final long NO_STRING = -1L;
+    /** Marks a missing consultation due date. */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final FileChannel recordChannel;
+    private final FileChannel heapChannel;
+    private final FileChannel indexChannel;
+    private volatile MappedByteBuffer[] recordSegments = new MappedByteBuffer[0];
+    private volatile MappedByteBuffer[] heapSegments = new MappedByteBuffer[0];
+    private volatile MappedByteBuffer[] indexSegments = new MappedByteBuffer[0];
+    /** Listener attached to every member handed out (the MemberManager). */
+    private final MemberListener listener;
+    /** Fetches addresses that were not loaded (may be null). */
+    private final AddressCache addressCache;
+    /** HC Numbers are indexed relative to this value (one below the centre's first). */
+    private final int indexBase;
+    /** The centre's last HC Number; higher ones are not in the index file. */
+    private final int indexLimit;
+    /** Slots of members whose HC Number is outside the centre's range (e.g. imported rows). */
+    private final Map<Integer, Integer> outOfRange = new ConcurrentHashMap<>();
+
+    private volatile int count;
+    private long heapEnd;
+
+    /**
+     * Constructor.
+     * Creates (or empties) the store files.
+     * @param base     Path prefix for the three store files.
+     * @param listener     Attached to every HCMember created from a record.
+     * @param addressCache Fetches addresses for members stored without one (may be null).
+     * @param centre       The centre whose members are stored, so the index covers only its HC Numbers.
+     * @throws IOException if the files cannot be created.
+     */
+    public OffHeapMemberStore(Path base, MemberListener listener, AddressCache addressCache, Centre centre) throws IOException {
+        this.listener = listener;
+        this.addressCache = addressCache;
+        this.indexBase = centre.getFirstHcNumber() - 1;
+        this.indexLimit = centre.getLastHcNumber();
+        this.recordChannel = open(Paths.get(base + ".dat"));
+        this.heapChannel = open(Paths.get(base + ".heap"));
+        this.indexChannel = open(Paths.get(base + ".idx"));
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // =========================================================================
+    // Writing
+    // =========================================================================
+
+    /**
+     * Appends a member as a new record.
+     * @param m The member to store (the object itself is not kept).
+     */
+    public synchronized void append(HCMember m) {
+        int slot = count;
+        MappedByteBuffer seg = recordSegment(slot);
+        int off = recordOffset(slot);
+        int hc = Integer.parseInt(m.getHCNumber());
+        seg.putInt(off + HC_NUMBER, hc);
+        seg.put(off + GENDER, (byte) m.getGender());
+        seg.putLong(off + FORENAME, putString(m.getForename()));
+        seg.putLong(off + SURNAME, putString(m.getSurname()));
+        writeMutable(seg, off, m, true);
+        setIndex(hc, slot);
+        count = slot + 1;
+    }
+
+    /**
+     * Writes the changeable fields of a member back to its record.
+     * @param m A member previously stored or handed out by this store.
+     */
+    public synchronized void update(HCMember m) {
+        int slot = slotOf(m.getHCNumber());
+        if (slot < 0) return;
+        MappedByteBuffer seg = recordSegment(slot);
+        int off = recordOffset(slot);
+        String address = m.loadedAddress();
+        boolean addressChanged = address != null && !address.equals(getString(seg.getLong(off + ADDRESS)));
+        writeMutable(seg, off, m, addressChanged);
+    }
+
+    /**
+     * Writes one changed field of a member back to its record.
+     * Other fields are left alone, so changes made through different copies
+     * of the same member do not overwrite each other. Visits are counted on
+     * the record itself and the member's tally is brought up to date.
+     * @param m     A member handed out by this store.
+     * @param field The field that changed.
+     */
+    public synchronized void update(HCMember m, MemberField field) {
+        int slot = slotOf(m.getHCNumber());
+        if (slot < 0) return;
+        MappedByteBuffer seg = recordSegment(slot);
+        int off = recordOffset(slot);
+        switch (field) {
+            case VISITS:
+                int visits = seg.getInt(off + VISITS) + 1;
+                seg.putInt(off + VISITS, visits);
+                m.setVisitTally(visits);
+                break;
+            case BLOOD_PRESSURE: seg.put(off + BP, bpCode(m.getBloodPressure())); break;
+            case BP_READING:
+                seg.putShort(off + SYSTOLIC, (short) m.getSystolic());
+                seg.putShort(off + DIASTOLIC, (short) m.getDiastolic());
+                break;
+            case CONSULTATION: seg.put(off + FLAGS, (byte) (m.isFConsultation() ? 1 : 0)); break;
+            case CONSULTATION_DUE: seg.putInt(off + DUE, dateCode(m.getConsultationDue())); break;
+            case WEIGHT: seg.putDouble(off + WEIGHT, m.getWeight()); break;
+            case AGE: seg.putInt(off + AGE, m.getAge()); break;
+            case ADDRESS: seg.putLong(off + ADDRESS, putString(m.loadedAddress())); break;
+        }
+    }
+
+    private void writeMutable(MappedByteBuffer seg, int off, HCMember m, boolean writeAddress) {
+        seg.put(off + FLAGS, (byte) (m.isFConsultation() ? 1 : 0));
+        seg.put(off + BP, bpCode(m.getBloodPressure()));
+        seg.putInt(off + AGE, m.getAge());
+        seg.putInt(off + VISITS, m.getVisitTally());
+        seg.putDouble(off + WEIGHT, m.getWeight());
+        seg.putLong(off + VERSION, m.getVersion());
+        seg.putInt(off + DUE, dateCode(m.getConsultationDue()));
+        seg.putShort(off + SYSTOLIC, (short) m.getSystolic());
+        seg.putShort(off + DIASTOLIC, (short) m.getDiastolic());
+        if (writeAddress) {
+            // A changed address is appended; the old bytes are simply left behind
+            seg.putLong(off + ADDRESS, putString(m.loadedAddress()));
+        }
+    }
+
+    private static int dateCode(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : NO_DATE;
+    }
+
+    private static byte bpCode(String bloodPressure) {
+        for (byte i = 0; i < BP_CATEGORIES.length; i++) {
+            if (BP_CATEGORIES[i].equalsIgnoreCase(bloodPressure)) return i;
+        }
+        return BP_NONE;
+    }
+
+    // =========================================================================
+    // Reading In Place
+    // =========================================================================
+
+    /** @return The number of stored members. */
+    public int size() { return count; }
+
+    public char genderAt(int slot) {
+        return (char) recordSegment(slot).get(recordOffset(slot) + GENDER);
+    }
+
+    public byte bloodPressureCodeAt(int slot) {
+        return recordSegment(slot).get(recordOffset(slot) + BP);
+    }
+
+    public boolean consultationAt(int slot) {
+        return (recordSegment(slot).get(recordOffset(slot) + FLAGS) & 1) != 0;
+    }
+
+    public int visitsAt(int slot) {
+        return recordSegment(slot).getInt(recordOffset(slot) + VISITS);
+    }
+
+    public String hcNumberAt(int slot) {
+        return String.valueOf(recordSegment(slot).getInt(recordOffset(slot) + HC_NUMBER));
+    }
+
+    /**
+     * Returns true if the member has had their consultation and it fell due on or before the day.
+     */
+    public boolean consultationExpiredAt(int slot, long epochDay) {
+        MappedByteBuffer seg = recordSegment(slot);
+        int off = recordOffset(slot);
+        int due = seg.getInt(off + DUE);
+        return (seg.get(off + FLAGS) & 1) != 0 && due != NO_DATE && due <= epochDay;
+    }
+
+    /**
+     * Creates an HCMember from a record.
+     * @param slot The record number.
+     * @return A new member object, wired to write changes back to the store.
+     */
+    public HCMember materialize(int slot) {
+        MappedByteBuffer seg = recordSegment(slot);
+        int off = recordOffset(slot);
+        HCMember m = new HCMember(
+            String.valueOf(seg.getInt(off + HC_NUMBER)),
+            getString(seg.getLong(off + FORENAME)),
+            getString(seg.getLong(off + SURNAME)),
+            (char) seg.get(off + GENDER),
+            seg.getInt(off + AGE),
+            seg.getDouble(off + WEIGHT),
+            getString(seg.getLong(off + ADDRESS)));
+        byte bp = seg.get(off + BP);
+        m.setBloodPressure(bp < BP_CATEGORIES.length ? BP_CATEGORIES[bp] : null);
+        m.setVisitTally(seg.getInt(off + VISITS));
+        m.setReading(seg.getShort(off + SYSTOLIC), seg.getShort(off + DIASTOLIC));
+        m.setFConsultation((seg.get(off + FLAGS) & 1) != 0);
+        m.setVersion(seg.getLong(off + VERSION));
+        int due = seg.getInt(off + DUE);
+        m.setConsultationDue(due != NO_DATE ? LocalDate.ofEpochDay(due) : null);
+        if (m.loadedAddress() == null && addressCache != null) {
+            m.leaveAddressUnloaded(addressCache);
+        }
+        m.setListener(listener);
+        return m;
+    }
+
+    /**
+     * Finds a member by HC Number without scanning.
+     * @return The member, or null if not stored.
+     */
+    public HCMember find(String hcNumber) {
+        int slot = slotOf(hcNumber);
+        return slot < 0 ? null : materialize(slot);
+    }
+
+    /**
+     * Scans the records in place and keeps only the slots of the matches.
+     * @param test Tested against each record slot.
+     * @return The matching members in storage order; each is created when read.
+     */
+    public List<HCMember> filter(IntPredicate test) {
+        return new SlotList(IntStream.range(0, count).filter(test).toArray());
+    }
+
+    /**
+     * Counts the records that match without creating any members.
+     */
+    public int count(IntPredicate test) {
+        return (int) IntStream.range(0, count).filter(test).count();
+    }
+
+    /**
+     * Returns a List view over the store. Elements are created on access and
+     * adding to the list appends a record.
+     */
+    public List<HCMember> asList() {
+        return new MemberListView();
+    }
+
+    private class MemberListView extends AbstractList<HCMember> implements RandomAccess {
+        @Override
+        public HCMember get(int index) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException(index);
+            return materialize(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public boolean add(HCMember m) {
+            append(m);
+            return true;
+        }
+    }
+
+    /** A filter result: the slots of the matching records, read as members on access. */
+    private class SlotList extends AbstractList<HCMember> implements RandomAccess {
+        private final int[] slots;
+
+        SlotList(int[] slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public HCMember get(int index) {
+            return materialize(slots[index]);
+        }
+
+        @Override
+        public int size() {
+            return slots.length;
+        }
+    }
+
+    // =========================================================================
+    // HC Number Index
+    // =========================================================================
+
+    private int slotOf(String hcNumber) {
+        int hc;
+        try {
+            hc = Integer.parseInt(hcNumber);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (hc <= indexBase || hc > indexLimit) {
+            Integer slot = outOfRange.get(hc);
+            return slot != null ? slot : -1;
+        }
+        int pos = hc - indexBase;
+        MappedByteBuffer[] segs = indexSegments;
+        int segIndex = pos / INDEX_PER_SEGMENT;
+        if (segIndex >= segs.length) return -1;
+        // Entries hold slot + 1 so that an unwritten (zero) entry means "absent"
+        return segs[segIndex].getInt((pos % INDEX_PER_SEGMENT) * 4) - 1;
+    }
+
+    private void setIndex(int hc, int slot) {
+        if (hc <= indexBase || hc > indexLimit) {
+            // Outside the range the index file covers; such members are few
+            outOfRange.put(hc, slot);
+            return;
+        }
+        int pos = hc - indexBase;
+        indexSegments = ensureSegment(indexChannel, indexSegments, pos / INDEX_PER_SEGMENT, (long) INDEX_PER_SEGMENT * 4);
+        indexSegments[pos / INDEX_PER_SEGMENT].putInt((pos % INDEX_PER_SEGMENT) * 4, slot + 1);
+    }
+
+    // =========================================================================
+    // String Side-Heap
+    // Each string is stored as a 2 byte length followed by its UTF-8 bytes.
+    // =========================================================================
+
+    private long putString(String s) {
+        if (s == null) return NO_STRING;
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int len = Math.min(bytes.length, Short.MAX_VALUE);
+        // Strings never straddle two segments
+        if (heapEnd % HEAP_SEGMENT_SIZE + 2 + len > HEAP_SEGMENT_SIZE) {
+            heapEnd = (heapEnd / HEAP_SEGMENT_SIZE + 1) * HEAP_SEGMENT_SIZE;
+        }
+        int segIndex = (int) (heapEnd / HEAP_SEGMENT_SIZE);
+        heapSegments = ensureSegment(heapChannel, heapSegments, segIndex, HEAP_SEGMENT_SIZE);
+        MappedByteBuffer seg = heapSegments[segIndex];
+        int off = (int) (heapEnd % HEAP_SEGMENT_SIZE);
+        seg.putShort(off, (short) len);
+        seg.put(off + 2, bytes, 0, len);
+
+        long ref = heapEnd;
+        heapEnd += 2 + len;
+        return ref;
+    }
+
+    private String getString(long ref) {
+        if (ref == NO_STRING) return null;
+        MappedByteBuffer seg = heapSegments[(int) (ref / HEAP_SEGMENT_SIZE)];
+        int off = (int) (ref % HEAP_SEGMENT_SIZE);
+        byte[] bytes = new byte[seg.getShort(off)];
+        seg.get(off + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // =========================================================================
+    // Segment Mapping
+    // =========================================================================
+
+    private MappedByteBuffer recordSegment(int slot) {
+        int segIndex = slot / RECORDS_PER_SEGMENT;
+        MappedByteBuffer[] segs = recordSegments;
+        if (segIndex < segs.length) return segs[segIndex];
+        synchronized (this) {
+            recordSegments = ensureSegment(recordChannel, recordSegments, segIndex, (long) RECORDS_PER_SEGMENT * RECORD_SIZE);
+            return recordSegments[segIndex];
+        }
+    }
+
+    private static int recordOffset(int slot) {
+        return (slot % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    /**
+     * Maps further segments of a file until the given segment exists.
+     * Mapping past the end of the file grows it.
+     */
+    private static MappedByteBuffer[] ensureSegment(FileChannel channel, MappedByteBuffer[] segs,
+                                                    int segIndex, long segmentSize) {
+        if (segIndex < segs.length) return segs;
+        MappedByteBuffer[] grown = Arrays.copyOf(segs, segIndex + 1);
+        try {
+            for (int i = segs.length; i <= segIndex; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentSize, segmentSize);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grow member store: " + e.getMessage(), e);
+        }
+        return grown;
+    }
+
+    /**
+     * Closes the store files.
+     */
+    public synchronized void close() {
+        try {
+            recordChannel.close();
+            heapChannel.close();
+            indexChannel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing member store: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,229 @@
+/*
+ * OptimisticUpdater.java
+ * Writes single-field member changes using optimistic concurrency.
+ * Every row carries a Version number; an update only succeeds if the row is
+ * still at the version this desk last saw (WHERE Version = ?). If another
+ * desk got there first the row is re-read, the change is merged per field
+ * and the update retried. No locks are held between attempts: a caller's
+ * transaction is rolled back after a conflicting attempt, so each attempt
+ * runs in a fresh transaction and no transaction is open during the backoff.
+ *
+ * Merge rules:
+ *   VisitTally - visits are added (VisitTally = VisitTally + n), so visits
+ *                recorded at different desks always add up.
+ *   Others     - the field being written takes this desk's value; every
+ *                other field keeps whatever the other desk wrote.
+ */
+package HealthCentreMemberSystem;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+public class OptimisticUpdater {
+
+    /** Attempts before giving up on a write that keeps conflicting. */
+    private static final int MAX_ATTEMPTS = 8;
+
+    private static final LongAdder CONFLICTS = Metrics.counter("update.conflicts");
+    private static final LatencyHistogram DB_UPDATE = Metrics.histogram("db.update");
+
+    /** The stored state of a member row. */
+    public static class Row {
+        public int visitTally;
+        public String bloodPressure;
+        public int systolic;
+        public int diastolic;
+        public boolean fConsultation;
+        public LocalDate consultationDue;
+        public double weight;
+        public int age;
+        public String address;
+        public long version;
+    }
+
+    /** The outcome of an update. */
+    public static class Result {
+        /** The row version after this update. */
+        public final long version;
+        /** The merged row if a conflict was resolved, otherwise null. */
+        public final Row merged;
+
+        Result(long version, Row merged) {
+            this.version = version;
+            this.merged = merged;
+        }
+    }
+
+    private OptimisticUpdater() {
+    }
+
+    /**
+     * Writes one field of a member row.
+     * @param conn            Open database connection: auto-commit, or in a
+     *                        transaction with nothing written yet (it is rolled
+     *                        back after a conflict; the caller commits the
+     *                        successful attempt).
+     * @param hcNumber        The member to update.
+     * @param field           The field to write.
+     * @param value           The new value, or the number of visits to add for VISITS.
+     * @param expectedVersion The row version this desk last saw.
+     * @return The new version, plus the merged row if another desk had changed it.
+     * @throws SQLException if the row is missing, the update keeps conflicting or the database fails.
+     */
+    public static Result update(Connection conn, String hcNumber, MemberField field, String value,
+                                long expectedVersion) throws SQLException {
+        long expected = expectedVersion;
+        Row merged = null;
+
+        for (int attempt = 1; ; attempt++) {
+            if (conditionalUpdate(conn, hcNumber, field, value, expected)) {
+                return new Result(expected + 1, merged);
+            }
+            Metrics.increment(CONFLICTS);
+            if (attempt >= MAX_ATTEMPTS) {
+                throw new SQLException("Update of member " + hcNumber + " kept conflicting", "40001");
+            }
+            // The update changed nothing; end its transaction before waiting
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+            }
+            if (attempt > 1) {
+                // Several desks are racing on this row: back off briefly with jitter
+                sleep(ThreadLocalRandom.current().nextInt(1, 1 << Math.min(attempt, 6)));
+            }
+
+            Row row = readRow(conn, hcNumber);
+            if (row == null) {
+                throw new SQLException("Member " + hcNumber + " not found for update", "02000");
+            }
+            expected = row.version;
+            merged = mergeInto(row, field, value);
+            merged.version = expected + 1;
+        }
+    }
+
+    private static boolean conditionalUpdate(Connection conn, String hcNumber, MemberField field,
+                                             String value, long expected) throws SQLException {
+        String sql;
+        switch (field) {
+            case VISITS:
+                sql = "UPDATE Members SET VisitTally = VisitTally + ?, Version = Version + 1 WHERE HCNumber = ? AND Version = ?";
+                break;
+            case BP_READING:
+                sql = "UPDATE Members SET Systolic = ?, Diastolic = ?, Version = Version + 1 WHERE HCNumber = ? AND Version = ?";
+                break;
+            default:
+                sql = "UPDATE Members SET " + columnOf(field) + " = ?, Version = Version + 1 WHERE HCNumber = ? AND Version = ?";
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int next = 2;
+            switch (field) {
+                case BP_READING:
+                    int[] reading = BloodPressureRules.parseReading(value);
+                    pstmt.setInt(1, reading[0]);
+                    pstmt.setInt(2, reading[1]);
+                    next = 3;
+                    break;
+                case VISITS:
+                case AGE:
+                    pstmt.setInt(1, Integer.parseInt(value));
+                    break;
+                case WEIGHT:
+                    pstmt.setDouble(1, Double.parseDouble(value));
+                    break;
+                case CONSULTATION:
+                    pstmt.setBoolean(1, Boolean.parseBoolean(value));
+                    break;
+                case CONSULTATION_DUE:
+                    pstmt.setDate(1, value != null ? java.sql.Date.valueOf(LocalDate.parse(value)) : null);
+                    break;
+                default:
+                    pstmt.setString(1, value);
+            }
+            pstmt.setString(next, hcNumber);
+            pstmt.setLong(next + 1, expected);
+
+            long start = Metrics.start();
+            int rows = pstmt.executeUpdate();
+            DB_UPDATE.recordSince(start);
+            return rows == 1;
+        }
+    }
+
+    /**
+     * Reads the current mutable state of a member row.
+     * @return The row, or null if it does not exist.
+     */
+    public static Row readRow(Connection conn, String hcNumber) throws SQLException {
+        String sql = "SELECT VisitTally, BloodPressure, Systolic, Diastolic, FConsultation, ConsultationDue, Weight, Age, Address, Version FROM Members WHERE HCNumber = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, hcNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) return null;
+                Row row = new Row();
+                row.visitTally = rs.getInt("VisitTally");
+                row.bloodPressure = rs.getString("BloodPressure");
+                row.systolic = rs.getInt("Systolic");
+                row.diastolic = rs.getInt("Diastolic");
+                row.fConsultation = rs.getBoolean("FConsultation");
+                java.sql.Date due = rs.getDate("ConsultationDue");
+                row.consultationDue = due != null ? due.toLocalDate() : null;
+                row.weight = rs.getDouble("Weight");
+                row.age = rs.getInt("Age");
+                row.address = rs.getString("Address");
+                row.version = rs.getLong("Version");
+                return row;
+            }
+        }
+    }
+
+    /**
+     * Applies this desk's change to the row another desk wrote.
+     */
+    private static Row mergeInto(Row row, MemberField field, String value) {
+        switch (field) {
+            case VISITS: row.visitTally += Integer.parseInt(value); break;
+            case BLOOD_PRESSURE: row.bloodPressure = value; break;
+            case BP_READING:
+                int[] reading = BloodPressureRules.parseReading(value);
+                row.systolic = reading[0];
+                row.diastolic = reading[1];
+                break;
+            case CONSULTATION: row.fConsultation = Boolean.parseBoolean(value); break;
+            case CONSULTATION_DUE: row.consultationDue = value != null ? LocalDate.parse(value) : null; break;
+            case WEIGHT: row.weight = Double.parseDouble(value); break;
+            case AGE: row.age = Integer.parseInt(value); break;
+            case ADDRESS: row.address = value; break;
+        }
+        return row;
+    }
+
+    /**
+     * Returns the Members table column holding a field.
+     */
+    public static String columnOf(MemberField field) {
+        switch (field) {
+            case VISITS: return "VisitTally";
+            case BLOOD_PRESSURE: return "BloodPressure";
+            case CONSULTATION: return "FConsultation";
+            case CONSULTATION_DUE: return "ConsultationDue";
+            case WEIGHT: return "Weight";
+            case AGE: return "Age";
+            default: return "Address";
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
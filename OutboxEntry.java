@@ -0,0 +1,219 @@
+/*
+ * OutboxEntry.java
+ * A single pending database write held in the persistence outbox.
+ * Entries are journalled in a compact binary form (toBytes), and written as
+ * tab separated lines where a person may need to read them (failed writes).
+ */
+package HealthCentreMemberSystem;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+public class OutboxEntry {
+
+    /** Insert a brand new member row. */
+    public static final String INSERT = "INSERT";
+    /** Write one changed field of a member: HC Number, field, value and the row version the desk read. */
+    public static final String UPDATE = "UPDATE";
+    /** Set every member's consultation flag to false. */
+    public static final String RESET_CONSULTATIONS = "RESET_CONSULTATIONS";
+    /** Set the consultation flag to false for a batch of members: their HC Numbers. */
+    public static final String EXPIRE_CONSULTATIONS = "EXPIRE_CONSULTATIONS";
+    /** Set the blood pressure category of a batch of members: HC Number, category pairs. */
+    public static final String SET_BLOOD_PRESSURES = "SET_BLOOD_PRESSURES";
+
+    /** Entry types by their binary code. New types must only ever be added at the end. */
+    private static final String[] TYPE_CODES = {
+        INSERT, UPDATE, RESET_CONSULTATIONS, EXPIRE_CONSULTATIONS, SET_BLOOD_PRESSURES
+    };
+
+    private final String type;
+    private final String[] values;
+    /** Completed once the write has reached the database. */
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    /** Failed attempts on this entry that were not connection problems. */
+    int failedAttempts;
+    /** Position in the outbox journal, given when the entry is recorded (0 before). */
+    private long seq;
+
+    /**
+     * Constructor.
+     * @param type   What kind of write this is (e.g. INSERT).
+     * @param values The data needed to perform the write.
+     */
+    public OutboxEntry(String type, String... values) {
+        this.type = type;
+        this.values = values;
+    }
+
+    /**
+     * Creates an entry that inserts a new member row.
+     */
+    public static OutboxEntry insert(HCMember m) {
+        return new OutboxEntry(INSERT,
+            m.getHCNumber(), m.getForename(), m.getSurname(), String.valueOf(m.getGender()),
+            String.valueOf(m.getAge()), String.valueOf(m.getWeight()), m.getAddress(),
+            m.getBloodPressure(), String.valueOf(m.getVisitTally()), String.valueOf(m.isFConsultation()));
+    }
+
+    /**
+     * Creates an entry that writes one changed field of a member.
+     * For visits the value is the number of visits to add, so that visits
+     * recorded at different desks add up rather than overwrite each other.
+     * The member's version goes with it, so the write can be checked against
+     * the row as the desk saw it even where the member is not kept in memory.
+     */
+    public static OutboxEntry update(HCMember m, MemberField field) {
+        String value;
+        switch (field) {
+            case VISITS: value = "1"; break;
+            case BLOOD_PRESSURE: value = m.getBloodPressure(); break;
+            case BP_READING: value = m.getSystolic() + "/" + m.getDiastolic(); break;
+            case CONSULTATION: value = String.valueOf(m.isFConsultation()); break;
+            case CONSULTATION_DUE: value = m.getConsultationDue() != null ? m.getConsultationDue().toString() : null; break;
+            case WEIGHT: value = String.valueOf(m.getWeight()); break;
+            case AGE: value = String.valueOf(m.getAge()); break;
+            default: value = m.getAddress();
+        }
+        return new OutboxEntry(UPDATE, m.getHCNumber(), field.name(), value, String.valueOf(m.getVersion()));
+    }
+
+    /**
+     * Rebuilds the member described by an INSERT entry.
+     */
+    public HCMember toMember() {
+        HCMember m = new HCMember(values[0], values[1], values[2], values[3].charAt(0),
+            Integer.parseInt(values[4]), Double.parseDouble(values[5]), values[6]);
+        m.setBloodPressure(values[7]);
+        m.setVisitTally(Integer.parseInt(values[8]));
+        m.setFConsultation(Boolean.parseBoolean(values[9]));
+        return m;
+    }
+
+    // =========================================================================
+    // Encoding
+    // =========================================================================
+
+    /**
+     * Encodes the entry as a single line (without the line break).
+     */
+    public String encode() {
+        StringBuilder sb = new StringBuilder(type);
+        for (String v : values) {
+            sb.append('\t');
+            escape(v, sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes a line written by encode().
+     */
+    public static OutboxEntry decode(String line) {
+        String[] parts = line.split("\t", -1);
+        String[] values = new String[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            values[i - 1] = unescape(parts[i]);
+        }
+        return new OutboxEntry(parts[0], values);
+    }
+
+    /**
+     * Encodes the entry in binary: a type code byte, the number of values
+     * (2 bytes), then each value as a 2 byte length (-1 for null) and its
+     * UTF-8 bytes.
+     */
+    public byte[] toBytes() {
+        int code = Arrays.asList(TYPE_CODES).indexOf(type);
+        if (code < 0) {
+            throw new IllegalArgumentException("Unknown outbox entry type: " + type);
+        }
+        byte[][] encoded = new byte[values.length][];
+        int size = 3;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+                size += encoded[i].length;
+            }
+            size += 2;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put((byte) code);
+        buf.putShort((short) values.length);
+        for (byte[] v : encoded) {
+            if (v == null) {
+                buf.putShort((short) -1);
+            } else {
+                buf.putShort((short) v.length);
+                buf.put(v);
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Decodes an entry written by toBytes().
+     */
+    public static OutboxEntry fromBytes(ByteBuffer buf) {
+        String type = TYPE_CODES[buf.get()];
+        String[] values = new String[buf.getShort() & 0xFFFF];
+        for (int i = 0; i < values.length; i++) {
+            int len = buf.getShort();
+            if (len >= 0) {
+                byte[] v = new byte[len];
+                buf.get(v);
+                values[i] = new String(v, StandardCharsets.UTF_8);
+            }
+        }
+        return new OutboxEntry(type, values);
+    }
+
+    private static void escape(String v, StringBuilder sb) {
+        if (v == null) {
+            sb.append("\\0");
+            return;
+        }
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String v) {
+        if (v.equals("\\0")) return null;
+        StringBuilder sb = new StringBuilder(v.length());
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '\\' && i + 1 < v.length()) {
+                char next = v.charAt(++i);
+                switch (next) {
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    default: sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // =========================================================================
+    // Getters
+    // =========================================================================
+
+    public String getType() { return type; }
+    public long getSeq() { return seq; }
+    void setSeq(long seq) { this.seq = seq; }
+    public String[] getValues() { return values; }
+    public CompletableFuture<Void> getFuture() { return future; }
+}
\ No newline at end of file
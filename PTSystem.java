@@ -4,24 +4,29 @@
  */
 package HealthCentreMemberSystem;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Scanner;
 import java.util.List;
 
 public class PTSystem {
     // The "Controller" that handles the logic
-    private MemberManager manager;
+    private MemberService manager;
     // Holds the currently selected member for targeted operations (visits, BP updates)
     private HCMember selectedMember;     
     private Scanner scanner;              
+    // Shows member lists a screen at a time
+    private MemberPager pager;
     
     /**
      * Constructor.
-     * Initialises the MemberManager and input scanner.
+     * Initialises the MemberManager (one per centre when several are configured) and input scanner.
      */
     public PTSystem() {
-        manager = new MemberManager(); 
+        manager = Centre.isSharded() ? new ShardedMemberManager() : new MemberManager();
         selectedMember = null;
         scanner = new Scanner(System.in);
+        pager = new MemberPager(scanner, Integer.getInteger("hcms.pager.pageSize", 25));
     }
     
     public static void main(String[] args) {
@@ -51,6 +56,7 @@ public class PTSystem {
                 case 7 -> recordConsultation();
                 case 8 -> updateWeightAndAge();
                 case 9 -> { 
+                    manager.close();
                     System.out.println("Thanks for using the Personal Trainer Review System!");
                     System.out.println("Goodbye!");
                 }
@@ -123,6 +129,9 @@ public class PTSystem {
         System.out.printf("Address:          %s\n", member.getAddress());
         System.out.printf("Blood Pressure:   %s\n", member.getBloodPressure());
         System.out.printf("Free Consultation: %s\n", member.isFConsultation() ? "Completed" : "Due");
+        if (member.isFConsultation() && member.getConsultationDue() != null) {
+            System.out.printf("Next Consultation: %s\n", member.getConsultationDue());
+        }
         System.out.printf("Centre Visits:    %d\n", member.getVisitTally());
         System.out.println("======================================================================\n");
     }
@@ -142,13 +151,8 @@ public class PTSystem {
             return;
         }
 
-        // Header for list view using formatted columns
-        System.out.printf("%-10s %-15s %-15s %-5s %-5s %-10s\n", "ID", "First Name", "Surname", "Sex", "Age", "BP");
-        System.out.println("----------------------------------------------------------------");
-        
-        for (HCMember m : allMembers) {
-            System.out.print(m.memberDetails());
-        }
+        // Rows are read from the list only as each page is shown
+        pager.show(allMembers);
         System.out.println("Total members: " + manager.getTotalCount());
     }
 
@@ -220,7 +224,7 @@ public class PTSystem {
     
     /**
      * Valid age integer.
-     * Validates input is within MIN_AGE and MAX_AGE.
+     * Validates input is within the configured age limits.
      * @return A valid integer age.
      */
     private int getValidAge() {
@@ -385,21 +389,26 @@ public class PTSystem {
         int choice = 0;
         do {
             displayStatsMenu();
-            choice = getMenuChoice(1, 6);
+            choice = getMenuChoice(1, 11);
             
             switch (choice) {
                 case 1: displayMembersByGender(); break;
                 case 2: displayHighBloodPressureMembers(); break;
                 case 3: displayMembersWithoutConsultation(); break;
                 case 4: displayLowVisitMembers(); break;
-                case 5: resetAllConsultations(); break;
-                case 6: System.out.println("Returning to main menu..."); break;
+                case 5: displayTopMembers(); break;
+                case 6: displayAllReports(); break;
+                case 7: resetAllConsultations(); break;
+                case 8: reloadBloodPressureRules(); break;
+                case 9: displayAtRiskMembers(); break;
+                case 10: displayDuplicateMembers(); break;
+                case 11: System.out.println("Returning to main menu..."); break;
             }
-            if (choice != 6) {
+            if (choice != 11) {
                 System.out.println("\nPress Enter to continue...");
                 scanner.nextLine();
             }
-        } while (choice != 6);
+        } while (choice != 11);
     } 
     
     /**
@@ -413,10 +422,15 @@ public class PTSystem {
         System.out.println("2. Display all HC Members with high blood pressure");
         System.out.println("3. Display all HC Members without a yearly F2F consultation");
         System.out.println("4. Display all HC Members that have visited the centre less than 5 times");
+        System.out.println("5. Display top ranked HC Members (visits, age, weight)");
+        System.out.println("6. Run all reports (morning review pack)");
         System.out.println("------------------------------------------------");
-        System.out.println("5. Reset all HC members F2F consultation to false");
+        System.out.println("7. Reset all HC members F2F consultation to false");
+        System.out.println("8. Reload blood pressure rules and reclassify members");
+        System.out.println("9. Health risk scores (members most at risk)");
+        System.out.println("10. Find possible duplicate enrolments");
         System.out.println("------------------------------------------------");
-        System.out.println("6. Return to main menu");
+        System.out.println("11. Return to main menu");
         System.out.println("");
         System.out.print("Please enter menu choice = ");
     } 
@@ -435,9 +449,7 @@ public class PTSystem {
         if (result.isEmpty()) {
             System.out.println("No " + (gender == 'M' ? "male" : "female") + " members found.");
         } else {
-            for(HCMember m : result) {
-                System.out.print(m.memberDetails());
-            }
+            pager.show(result);
         }
     } 
     
@@ -454,9 +466,7 @@ public class PTSystem {
         if (result.isEmpty()) {
             System.out.println("No members with high blood pressure found.");
         } else {
-            for(HCMember m : result) {
-                System.out.print(m.memberDetails());
-            }
+            pager.show(result);
         }
     } 
     
@@ -473,9 +483,7 @@ public class PTSystem {
         if (result.isEmpty()) {
              System.out.println("All members have completed their yearly consultation.");
         } else {
-            for(HCMember m : result) {
-                System.out.print(m.memberDetails());
-            }
+            pager.show(result);
         }
     } 
     
@@ -492,12 +500,71 @@ public class PTSystem {
         if (result.isEmpty()) {
              System.out.println("All members have 5 or more visits.");
         } else {
-            for(HCMember m : result) {
-                System.out.print(m.memberDetails());
-            }
+            pager.show(result);
         }
     } 
     
+    /**
+     * Ranked Report: Top members by visits, age or weight
+     */
+    private void displayTopMembers() {
+        System.out.println("================================================");
+        System.out.println("\tTOP RANKED MEMBERS");
+        System.out.println("================================================");
+        System.out.println("1. Most frequent visitors");
+        System.out.println("2. Oldest members");
+        System.out.println("3. Heaviest members");
+        System.out.print("Rank by = ");
+        RankField field = RankField.values()[getMenuChoice(1, 3) - 1];
+
+        System.out.print("How many members to list (1-100): ");
+        int k = getMenuChoice(1, 100);
+
+        List<HCMember> result = manager.getTopMembers(field, k);
+        
+        if (result.isEmpty()) {
+            System.out.println("No members registered in the system.");
+        } else {
+            System.out.println(field.getTitle() + ":");
+            pager.showRanked(result, field);
+        }
+    } 
+
+    /**
+     * Combined Report: every stats report produced in a single pass
+     */
+    private void displayAllReports() {
+        System.out.println("================================================");
+        System.out.println("\tMORNING REVIEW PACK");
+        System.out.println("================================================");
+        
+        StatsPack pack = manager.runAllReports(5);
+        
+        System.out.println("Total members:                 " + pack.getTotal());
+        System.out.println("Male members:                  " + pack.getMales().size());
+        System.out.println("Female members:                " + pack.getFemales().size());
+        System.out.println("High blood pressure:           " + pack.getHighBloodPressure().size());
+        System.out.println("Due F2F consultation:          " + pack.getDueConsultation().size());
+        System.out.println("Fewer than 5 visits:           " + pack.getLowVisits().size());
+        
+        System.out.print("\nShow the full lists? (Y/N): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("Y")) return;
+        
+        printReportSection("MEMBERS WITH HIGH BLOOD PRESSURE", pack.getHighBloodPressure());
+        printReportSection("MEMBERS WITHOUT YEARLY F2F CONSULTATION", pack.getDueConsultation());
+        printReportSection("MEMBERS WITH LESS THAN 5 VISITS", pack.getLowVisits());
+    } 
+
+    /**
+     * Prints one titled section of the review pack.
+     */
+    private void printReportSection(String title, List<HCMember> result) {
+        System.out.println("\n------------------------------------------------");
+        System.out.println(title + " (" + result.size() + ")");
+        System.out.println("------------------------------------------------");
+        pager.show(result);
+    }
+    
     /**
      * Reset all consultations
      * Includes a confirmation step
@@ -518,6 +585,95 @@ public class PTSystem {
         }
     } 
 
+    /**
+     * Reloads the blood pressure rules file and recomputes every category
+     */
+    private void reloadBloodPressureRules() {
+        System.out.println("================================================");
+        System.out.println("\tRELOAD BLOOD PRESSURE RULES");
+        System.out.println("================================================");
+
+        try {
+            int changed = manager.reloadBloodPressureRules();
+            System.out.println("Rules in force: " + BloodPressureRules.current());
+            System.out.println(changed + " members reclassified.");
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error loading blood pressure rules: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ranked Report: members with the highest health-risk scores.
+     * Scores are computed nightly; they can also be recomputed here.
+     */
+    private void displayAtRiskMembers() {
+        System.out.println("================================================");
+        System.out.println("\tMEMBERS MOST AT RISK");
+        System.out.println("================================================");
+
+        System.out.print("How many members to list (1-100): ");
+        int k = getMenuChoice(1, 100);
+
+        List<RiskScores.Entry> ranked = manager.getAtRiskMembers(k);
+        System.out.print(ranked.isEmpty() ? "No scores yet, score all members now? (Y/N): "
+            : "Rescore all members first? (Y/N): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("Y")) {
+            long start = System.nanoTime();
+            int scored = manager.scoreHealthRisks();
+            System.out.printf("%d members scored in %.0f ms (%s kernel).\n",
+                scored, (System.nanoTime() - start) / 1e6, RiskScoring.kernel().name());
+            ranked = manager.getAtRiskMembers(k);
+        }
+
+        if (ranked.isEmpty()) {
+            System.out.println("No health risk scores available.");
+            return;
+        }
+        List<HCMember> members = new ArrayList<>();
+        List<Float> scores = new ArrayList<>();
+        for (RiskScores.Entry e : ranked) {
+            HCMember m = manager.findMemberByHCNumber(e.getHcNumber());
+            if (m != null) {
+                members.add(m);
+                scores.add(e.getScore());
+            }
+        }
+        pager.showScored(members, scores);
+    }
+
+    /**
+     * Ranked Report: pairs of members that look like the same person,
+     * with the enrolment to keep. Nothing is merged here.
+     */
+    private void displayDuplicateMembers() {
+        System.out.println("================================================");
+        System.out.println("\tPOSSIBLE DUPLICATE ENROLMENTS");
+        System.out.println("================================================");
+
+        System.out.print("How many suggestions to list (1-100): ");
+        int k = getMenuChoice(1, 100);
+
+        long start = System.nanoTime();
+        List<MergeSuggestion> found = manager.findDuplicates();
+        System.out.printf("%d possible duplicates found in %.0f ms.\n", found.size(), (System.nanoTime() - start) / 1e6);
+        if (found.isEmpty()) {
+            return;
+        }
+
+        List<MergeSuggestion> shown = new ArrayList<>();
+        List<HCMember[]> pairs = new ArrayList<>();
+        for (MergeSuggestion s : found) {
+            if (shown.size() == k) break;
+            HCMember keep = manager.findMemberByHCNumber(s.getKeepHcNumber());
+            HCMember duplicate = manager.findMemberByHCNumber(s.getDuplicateHcNumber());
+            if (keep != null && duplicate != null) {
+                shown.add(s);
+                pairs.add(new HCMember[] {keep, duplicate});
+            }
+        }
+        pager.showSuggestions(shown, pairs);
+    }
+
     /**
      * Operational Method: Increments visit count for selected member
      */
@@ -0,0 +1,670 @@
+/*
+ * PersistenceOutbox.java
+ * Durable local queue of database writes, and the write-ahead journal of
+ * every change made to the in-memory members.
+ * Every write is appended to a local file and fsync'd before the caller
+ * continues, so nothing is lost if SQL Server is down or the program stops.
+ * Callers writing at the same time share one fsync (group commit), so a
+ * write costs microseconds rather than a database round trip.
+ * A background drainer applies the entries to the database in order,
+ * retrying with exponential backoff, and the file is replayed on restart.
+ *
+ * Every entry gets a sequence number, which keeps increasing across restarts.
+ * After each drained entry the drainer records "drained up to N" in the file
+ * header (it reaches the disk with the next fsync), and a restart replays
+ * only the records after it. Drained records are dropped from the file when
+ * the queue empties, or every COMPACT_AFTER drained entries.
+ *
+ * The database keeps the same position for each journal (OutboxCheckpoint
+ * table), updated in the same transaction as the entry it covers. An entry
+ * saved just before a crash, ahead of the header, is therefore skipped
+ * rather than applied twice (a visit is an increment, so replaying it would
+ * count it again). The owner calls skipSaved() before restoring the entries
+ * in memory, and start() once it has.
+ *
+ * File format: the 4 byte magic "HCJ2", the sequence number drained up to
+ * (long), the journal's id (a random UUID, two longs), then one record per
+ * entry: payload length (int), CRC-32 of the payload (int), payload
+ * (sequence number as a long, then OutboxEntry.toBytes).
+ * A record cut short or damaged by a crash ends the replay. A file that
+ * does not start with the magic is refused.
+ */
+package HealthCentreMemberSystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+public class PersistenceOutbox {
+
+    /** Applies one outbox entry to the database. */
+    public interface Handler {
+        /**
+         * Performs the SQL for an entry, in the outbox's transaction.
+         * @return What to do once that transaction has committed (e.g. keep
+         *         the members in memory in step), or null for nothing.
+         */
+        Runnable apply(Connection conn, OutboxEntry entry) throws SQLException;
+    }
+
+    /** A database read that needs the entries not yet saved (see readConsistently). */
+    public interface Read<T> {
+        T run(List<OutboxEntry> pending) throws SQLException;
+    }
+
+    /** First retry delay after a failure. */
+    private static final long INITIAL_BACKOFF_MS = 500;
+    /** Longest delay between retries. */
+    private static final long MAX_BACKOFF_MS = 30_000;
+    /** Attempts before an entry that keeps failing (not a connection problem) is set aside. */
+    private static final int MAX_ENTRY_ATTEMPTS = 10;
+    /** Drained entries after which the file is rewritten to drop them. */
+    private static final int COMPACT_AFTER = 1000;
+    /** Marks an outbox file in the current format. */
+    private static final byte[] MAGIC = "HCJ2".getBytes(StandardCharsets.US_ASCII);
+    /** File header: the magic, the sequence number drained up to and the journal id. */
+    private static final int FILE_HEADER = 28;
+    /** Bytes before each record payload: length and CRC. */
+    private static final int RECORD_HEADER = 8;
+
+    private static final LatencyHistogram SUBMIT = Metrics.histogram("outbox.submit");
+    private static final LongAdder FSYNCS = Metrics.counter("outbox.fsyncs");
+
+    private final Path file;
+    private final Path failedFile;
+    /** The database the entries are written to. */
+    private final DBConnector db;
+    private final Handler handler;
+    private final ConcurrentLinkedDeque<OutboxEntry> pending = new ConcurrentLinkedDeque<>();
+    /** Guards the file and wakes the drainer. */
+    private final Object lock = new Object();
+    /** Held while an entry is saved and taken off the queue (see readConsistently). */
+    private final Object applying = new Object();
+    private final Thread drainer;
+    private FileChannel channel;
+    private volatile boolean closed;
+
+    /** Sequence number of the last record appended (guarded by lock). */
+    private long appendedSeq;
+    /** Sequence number of the last entry drained, as recorded in the header (guarded by lock). */
+    private long drainedSeq;
+    /** Names this journal's sequence numbers in the database; a new file gets a new id. */
+    private UUID journalId;
+    /** Whether the database has the OutboxCheckpoint table; null until it has been read. */
+    private volatile Boolean databaseCheckpoint;
+    /** Sequence number up to which records are known to be on disk. */
+    private final AtomicLong durableSeq = new AtomicLong();
+    /** Held by the one thread doing an fsync on behalf of everyone waiting. */
+    private final Object syncLock = new Object();
+
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder setAside = new LongAdder();
+    private int drainedSinceCompact;
+    private volatile double drainRate;
+    private long rateSampleTime = System.nanoTime();
+    private long rateSampleCount;
+
+    /**
+     * Constructor.
+     * Opens (or creates) the outbox file and reloads any entries left from
+     * a previous run. Nothing is drained until start() is called.
+     * @param file    The outbox file.
+     * @param db      The database the entries are written to.
+     * @param handler Performs the SQL for each entry.
+     * @throws IOException if the outbox file cannot be opened or is not an outbox file.
+     */
+    public PersistenceOutbox(Path file, DBConnector db, Handler handler) throws IOException {
+        this.file = file;
+        this.failedFile = file.resolveSibling(file.getFileName() + ".failed");
+        this.db = db;
+        this.handler = handler;
+
+        boolean clean = readEntries();
+        if (journalId == null) {
+            journalId = UUID.randomUUID();
+        }
+        // Not opened for appending, so the header can be written in place
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (!clean) {
+            // A damaged tail: start a fresh file from what was read
+            rewrite();
+        } else if (channel.size() == 0) {
+            channel.write(header());
+            channel.force(false);
+        } else {
+            channel.position(channel.size());
+        }
+        markDurable(appendedSeq);
+
+        this.drainer = new Thread(this::drainLoop, "outbox-drainer");
+        this.drainer.setDaemon(true);
+    }
+
+    /**
+     * Starts the background drainer.
+     */
+    public void start() {
+        if (!pending.isEmpty()) {
+            System.out.println("Outbox: " + pending.size() + " unsaved writes found, replaying.");
+        }
+        drainer.start();
+    }
+
+    // =========================================================================
+    // Database Checkpoint
+    // =========================================================================
+
+    /**
+     * Drops the entries the database already holds (saved before the last
+     * stop, but after the header was last synced). Call before the pending
+     * entries are restored in memory and before start(). If the database
+     * cannot be reached, the drainer checks once it can.
+     * @return The number of entries dropped.
+     */
+    public int skipSaved() {
+        try (Connection conn = db.getConnection()) {
+            return skipSaved(conn);
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    private int skipSaved(Connection conn) throws SQLException {
+        long saved;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT Seq FROM OutboxCheckpoint WHERE Journal = ?")) {
+            pstmt.setString(1, journalId.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                saved = rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            if (isConnectionProblem(e)) throw e;
+            System.out.println("Outbox: no OutboxCheckpoint table (" + e.getMessage()
+                + "); a write saved just before a crash may be repeated.");
+            databaseCheckpoint = false;
+            return 0;
+        }
+        databaseCheckpoint = true;
+
+        int skipped = 0;
+        synchronized (applying) {
+            OutboxEntry head;
+            while ((head = pending.peek()) != null && head.getSeq() <= saved) {
+                pending.poll();
+                head.getFuture().complete(null);
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            checkpoint(saved);
+        }
+        return skipped;
+    }
+
+    /**
+     * Applies an entry and moves this journal's database checkpoint on to it,
+     * in one transaction, so the entry is either saved and marked or neither.
+     * @return The handler's action to run now the transaction has committed, or null.
+     */
+    private Runnable applyAndMark(Connection conn, OutboxEntry entry) throws SQLException {
+        if (!Boolean.TRUE.equals(databaseCheckpoint)) {
+            return handler.apply(conn, entry);
+        }
+        conn.setAutoCommit(false);
+        try {
+            Runnable afterCommit = handler.apply(conn, entry);
+            try (PreparedStatement update = conn.prepareStatement("UPDATE OutboxCheckpoint SET Seq = ? WHERE Journal = ?")) {
+                update.setLong(1, entry.getSeq());
+                update.setString(2, journalId.toString());
+                if (update.executeUpdate() == 0) {
+                    try (PreparedStatement insert = conn.prepareStatement("INSERT INTO OutboxCheckpoint (Journal, Seq) VALUES (?, ?)")) {
+                        insert.setString(1, journalId.toString());
+                        insert.setLong(2, entry.getSeq());
+                        insert.executeUpdate();
+                    }
+                }
+            }
+            conn.commit();
+            return afterCommit;
+        } catch (SQLException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException ignored) {
+                // The connection is gone; the transaction goes with it
+            }
+            throw e;
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException ignored) {
+                // As above
+            }
+        }
+    }
+
+    /**
+     * Durably records a write and queues it for the database.
+     * Returns once the entry is safely on disk; the database write happens later.
+     * @param entry The write to perform.
+     * @return A future completed when the write has reached the database.
+     * @throws IOException if the entry could not be written to the outbox file.
+     */
+    public CompletableFuture<Void> submit(OutboxEntry entry) throws IOException {
+        long start = Metrics.start();
+        byte[] payload = entry.toBytes();
+        long seq;
+        synchronized (lock) {
+            seq = appendedSeq + 1;
+            entry.setSeq(seq);
+            channel.write(record(entry, payload));
+            appendedSeq = seq;
+            pending.add(entry);
+            lock.notifyAll();
+        }
+        awaitDurable(seq);
+        SUBMIT.recordSince(start);
+        return entry.getFuture();
+    }
+
+    /**
+     * Waits until the given record is on disk. Whoever gets here first does
+     * the fsync for every record appended so far; the others find their
+     * record already covered and return without an fsync of their own.
+     */
+    private void awaitDurable(long seq) throws IOException {
+        synchronized (syncLock) {
+            while (durableSeq.get() < seq) {
+                FileChannel ch;
+                long target;
+                synchronized (lock) {
+                    ch = channel;
+                    target = appendedSeq;
+                }
+                try {
+                    ch.force(false);
+                    Metrics.increment(FSYNCS);
+                    markDurable(target);
+                } catch (ClosedChannelException e) {
+                    // Replaced by a compaction, which left every record on disk
+                    if (closed) throw e;
+                }
+            }
+        }
+    }
+
+    private void markDurable(long seq) {
+        durableSeq.accumulateAndGet(seq, Math::max);
+    }
+
+    /**
+     * Lays out the record of an entry: length, CRC, then its sequence number and bytes.
+     */
+    private static ByteBuffer record(OutboxEntry entry, byte[] payload) {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER + 8 + payload.length);
+        buf.putInt(8 + payload.length);
+        buf.putInt(0);
+        buf.putLong(entry.getSeq());
+        buf.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), RECORD_HEADER, 8 + payload.length);
+        buf.putInt(4, (int) crc.getValue());
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Lays out the file header: the magic, the sequence number drained up to and the journal id.
+     */
+    private ByteBuffer header() {
+        ByteBuffer buf = ByteBuffer.allocate(FILE_HEADER);
+        buf.put(MAGIC);
+        buf.putLong(drainedSeq);
+        buf.putLong(journalId.getMostSignificantBits());
+        buf.putLong(journalId.getLeastSignificantBits());
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * @return The entries still waiting for the database, oldest first.
+     */
+    public List<OutboxEntry> getPendingEntries() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * Runs a database read while no entry is being saved, and passes it the
+     * entries still waiting. Every entry is then either in what it reads or
+     * in the list, never both and never neither. The drainer waits for the
+     * read, so keep it short.
+     */
+    public <T> T readConsistently(Read<T> read) throws SQLException {
+        synchronized (applying) {
+            return read.run(getPendingEntries());
+        }
+    }
+
+    // =========================================================================
+    // Drainer
+    // =========================================================================
+
+    private void drainLoop() {
+        long backoff = INITIAL_BACKOFF_MS;
+        boolean failing = false;
+
+        while (!closed) {
+            if (pending.isEmpty()) {
+                waitForWork();
+                continue;
+            }
+            try (Connection conn = db.getConnection()) {
+                if (databaseCheckpoint == null) {
+                    // Unreachable at start-up: drop what it already holds before writing
+                    skipSaved(conn);
+                }
+                OutboxEntry head;
+                while (!closed && (head = pending.peek()) != null) {
+                    applyEntry(conn, head);
+                }
+                if (failing) {
+                    System.out.println("Outbox: database reachable again, " + pending.size() + " writes left.");
+                    failing = false;
+                }
+                backoff = INITIAL_BACKOFF_MS;
+            } catch (SQLException e) {
+                failures.increment();
+                if (!failing) {
+                    System.out.println("Outbox: database unavailable (" + e.getMessage() + "), "
+                        + pending.size() + " writes queued. Retrying in the background.");
+                    failing = true;
+                }
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Applies the head entry. Connection failures are thrown to the drain loop;
+     * any other error is retried a few times before the entry is set aside.
+     */
+    private void applyEntry(Connection conn, OutboxEntry head) throws SQLException {
+        synchronized (applying) {
+            try {
+                Runnable afterCommit = applyAndMark(conn, head);
+                db.recordWrite();
+                if (afterCommit != null) {
+                    afterCommit.run();
+                }
+                checkpoint(head.getSeq());
+                pending.poll();
+                drained.increment();
+                head.getFuture().complete(null);
+            } catch (SQLException e) {
+                if (isConnectionProblem(e) || ++head.failedAttempts < MAX_ENTRY_ATTEMPTS) {
+                    throw e;
+                }
+                System.out.println("Outbox: giving up on write after " + MAX_ENTRY_ATTEMPTS
+                    + " attempts (" + e.getMessage() + "), saved to " + failedFile);
+                setAside(head);
+                setAside.increment();
+                checkpoint(head.getSeq());
+                pending.poll();
+                head.getFuture().completeExceptionally(e);
+            }
+        }
+        compactIfNeeded();
+        sampleDrainRate();
+    }
+
+    /**
+     * Records in the file header that every entry up to this one is done with,
+     * so a restart does not replay it. Written in place without an fsync of
+     * its own; it reaches the disk with the next one.
+     */
+    private void checkpoint(long seq) {
+        synchronized (lock) {
+            drainedSeq = seq;
+            try {
+                ByteBuffer buf = ByteBuffer.allocate(8);
+                buf.putLong(0, seq);
+                channel.write(buf, MAGIC.length);
+            } catch (IOException e) {
+                System.out.println("Outbox: could not record drained position: " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isConnectionProblem(SQLException e) {
+        String state = e.getSQLState();
+        return state == null || state.startsWith("08");
+    }
+
+    private void setAside(OutboxEntry entry) {
+        try {
+            Files.write(failedFile, (entry.encode() + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.out.println("Outbox: could not record failed write: " + e.getMessage());
+        }
+    }
+
+    private void waitForWork() {
+        synchronized (lock) {
+            if (pending.isEmpty() && !closed) {
+                try {
+                    lock.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        sampleDrainRate();
+    }
+
+    private void sleep(long millis) {
+        synchronized (lock) {
+            try {
+                lock.wait(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // =========================================================================
+    // File Maintenance
+    // =========================================================================
+
+    /**
+     * Drops drained entries from the file: truncates it when the queue is empty,
+     * otherwise rewrites it with only the pending entries every COMPACT_AFTER writes.
+     */
+    private void compactIfNeeded() {
+        synchronized (lock) {
+            drainedSinceCompact++;
+            try {
+                if (pending.isEmpty()) {
+                    // The header keeps the drained position, so sequence numbers carry on from it
+                    channel.truncate(FILE_HEADER);
+                    channel.force(false);
+                    markDurable(appendedSeq);
+                    drainedSinceCompact = 0;
+                } else if (drainedSinceCompact >= COMPACT_AFTER) {
+                    rewrite();
+                    drainedSinceCompact = 0;
+                }
+            } catch (IOException e) {
+                System.out.println("Outbox: compaction failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the header and the pending entries to a new file and swaps it
+     * in. Callers hold the lock.
+     */
+    private void rewrite() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(header());
+            for (OutboxEntry e : pending) {
+                out.write(record(e, e.toBytes()));
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        markDurable(appendedSeq);
+    }
+
+    /**
+     * Makes the rename of the rewritten file durable by syncing its directory.
+     */
+    private void syncDirectory() {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened like this on every platform (e.g. Windows)
+        }
+    }
+
+    /**
+     * Reads the entries not yet drained into the queue, and where the
+     * sequence numbers got to. Reading stops at a record cut short or damaged
+     * by a crash.
+     * @return True if the file can be appended to as it is; false if it has
+     *         a damaged tail, and must be rewritten.
+     * @throws IOException if the file cannot be read or is not an outbox file.
+     */
+    private boolean readEntries() throws IOException {
+        if (!Files.exists(file)) return true;
+        byte[] content = Files.readAllBytes(file);
+        if (content.length == 0) return true;
+
+        if (content.length < FILE_HEADER || !startsWith(content, MAGIC)) {
+            throw new IOException(file + " is not an outbox file (expected the HCJ2 header)");
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(content);
+        buf.position(MAGIC.length);
+        drainedSeq = buf.getLong();
+        appendedSeq = drainedSeq;
+        journalId = new UUID(buf.getLong(), buf.getLong());
+        while (buf.remaining() >= RECORD_HEADER) {
+            int length = buf.getInt();
+            int checksum = buf.getInt();
+            if (length < 8 || length > buf.remaining()) {
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(content, buf.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                return false;
+            }
+            ByteBuffer payload = buf.slice();
+            payload.limit(length);
+            buf.position(buf.position() + length);
+            long seq = payload.getLong();
+            OutboxEntry entry = OutboxEntry.fromBytes(payload);
+            entry.setSeq(seq);
+            appendedSeq = Math.max(appendedSeq, seq);
+            // Drained before the last stop, but not yet compacted away
+            if (seq > drainedSeq) {
+                pending.add(entry);
+            }
+        }
+        return !buf.hasRemaining();
+    }
+
+    private static boolean startsWith(byte[] content, byte[] magic) {
+        return content.length >= magic.length && Arrays.equals(Arrays.copyOf(content, magic.length), magic);
+    }
+
+    // =========================================================================
+    // Statistics
+    // =========================================================================
+
+    private synchronized void sampleDrainRate() {
+        long now = System.nanoTime();
+        long elapsed = now - rateSampleTime;
+        if (elapsed >= 1_000_000_000L) {
+            long count = drained.sum();
+            drainRate = (count - rateSampleCount) * 1e9 / elapsed;
+            rateSampleCount = count;
+            rateSampleTime = now;
+        }
+    }
+
+    /** @return Writes waiting for the database. */
+    public int getDepth() { return pending.size(); }
+    /** @return Writes applied to the database since start-up. */
+    public long getDrainedCount() { return drained.sum(); }
+    /** @return Failed attempts to reach the database since start-up. */
+    public long getFailureCount() { return failures.sum(); }
+    /** @return Writes given up on and saved to the .failed file since start-up. */
+    public long getSetAsideCount() { return setAside.sum(); }
+    /** @return The file writes that kept failing are saved to. */
+    public Path getFailedFile() { return failedFile; }
+    /** @return Writes applied per second over the last sample period. */
+    public double getDrainRate() { return drainRate; }
+
+    // =========================================================================
+    // Shutdown
+    // =========================================================================
+
+    /**
+     * Gives the drainer up to the given time to empty the queue, then stops it.
+     * Anything still pending stays in the file and is replayed on next start.
+     * @param timeoutMillis How long to wait for outstanding writes.
+     */
+    public void close(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+            sleep(50);
+        }
+        closed = true;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        try {
+            drainer.join(timeoutMillis);
+            synchronized (lock) {
+                // The drained position in the header may not have been synced yet
+                channel.force(false);
+                channel.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Outbox: error closing file: " + e.getMessage());
+        }
+        if (!pending.isEmpty()) {
+            System.out.println("Outbox: " + pending.size() + " writes will be saved on next start.");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,182 @@
+/*
+ * PopulationGenerator.java
+ * Generates realistic synthetic members and bulk loads them into the database.
+ * Every generated member passes the HCMember validation rules.
+ *
+ * Usage: java HealthCentreMemberSystem.PopulationGenerator <count> [batchSize] [seed] [centre]
+ */
+package HealthCentreMemberSystem;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+public class PopulationGenerator {
+
+    private static final String[] MALE_NAMES = {
+        "James", "John", "Robert", "Michael", "David", "William", "Richard", "Joseph", "Thomas", "Daniel",
+        "Patrick", "Sean", "Liam", "Conor", "Aidan", "Ciaran", "Niall", "Declan", "Ryan", "Mark"
+    };
+    private static final String[] FEMALE_NAMES = {
+        "Mary", "Patricia", "Jennifer", "Linda", "Elizabeth", "Susan", "Jessica", "Sarah", "Karen", "Lisa",
+        "Siobhan", "Aoife", "Niamh", "Ciara", "Orla", "Grainne", "Emma", "Sophie", "Chloe", "Megan"
+    };
+    private static final String[] SURNAMES = {
+        "Smith", "Jones", "Taylor", "Brown", "Wilson", "Murphy", "Kelly", "O'Neill", "Doherty", "Campbell",
+        "McLaughlin", "Quinn", "Byrne", "Walsh", "Ryan", "O'Brien", "McCann", "Gallagher", "Boyle", "Hughes",
+        "Anderson", "Thompson", "Robinson", "Clarke", "Stewart", "Johnston", "Moore", "Martin", "Reid", "Graham"
+    };
+    private static final String[] STREETS = {
+        "Main Street", "High Street", "Church Road", "Park Avenue", "Station Road", "Mill Lane",
+        "Castle Street", "Victoria Road", "Queen Street", "Meadow Way", "Orchard Drive", "Riverside"
+    };
+    private static final String[] TOWNS = {
+        "Belfast", "Derry", "Lisburn", "Newry", "Armagh", "Omagh", "Enniskillen", "Coleraine", "Bangor", "Antrim"
+    };
+
+    private final Random random;
+
+    /**
+     * Constructor.
+     * @param seed Seed for repeatable populations.
+     */
+    public PopulationGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Creates one random member with plausible clinical data.
+     * @param hcNumber The HC Number to give the member.
+     * @return A member that satisfies every HCMember validation rule.
+     */
+    public HCMember nextMember(String hcNumber) {
+        char gender = random.nextBoolean() ? 'M' : 'F';
+        String forename = pick(gender == 'M' ? MALE_NAMES : FEMALE_NAMES);
+        String surname = pick(SURNAMES);
+        // Adult ages, weighted towards the middle years
+        int age = clamp((int) Math.round(45 + random.nextGaussian() * 16), HCMember.getMinAge(), HCMember.getMaxAge());
+        double weight = gender == 'M' ? 84 + random.nextGaussian() * 14 : 70 + random.nextGaussian() * 13;
+        weight = Math.round(Math.max(HCMember.getMinWeight(), Math.min(HCMember.getMaxWeight(), weight)) * 10) / 10.0;
+        String address = (1 + random.nextInt(250)) + " " + pick(STREETS) + ", " + pick(TOWNS);
+
+        HCMember m = new HCMember(hcNumber, forename, surname, gender, age, weight, address);
+
+        // Readings drift upwards with age, so older members are more often "High"
+        int systolic = clamp((int) Math.round(105 + age * 0.45 + random.nextGaussian() * 16),
+            HCMember.getMinSystolic(), HCMember.getMaxSystolic());
+        int diastolic = clamp((int) Math.round(70 + age * 0.15 + random.nextGaussian() * 10),
+            HCMember.getMinDiastolic(), HCMember.getMaxDiastolic());
+        m.calcBloodPressure(systolic, diastolic);
+
+        // Visit counts are heavily skewed: most members come rarely, a few very often
+        m.setVisitTally((int) (-Math.log(1 - random.nextDouble()) * 8));
+        m.setFConsultation(random.nextDouble() < 0.65);
+        return m;
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // =========================================================================
+    // Bulk Load
+    // =========================================================================
+
+    /**
+     * Inserts generated members into the original database (centre 0).
+     * @see #generateIntoDatabase(Centre, int, int)
+     */
+    public long generateIntoDatabase(int count, int batchSize) throws SQLException {
+        return generateIntoDatabase(Centre.of(0), count, batchSize);
+    }
+
+    /**
+     * Inserts generated members into a centre's database, after the highest
+     * HC Number already there.
+     * @param centre    The centre the members join.
+     * @param count     How many members to create.
+     * @param batchSize Rows per JDBC batch / transaction.
+     * @return The number of rows inserted.
+     * @throws SQLException if the database rejects the load.
+     */
+    public long generateIntoDatabase(Centre centre, int count, int batchSize) throws SQLException {
+        String sql = "INSERT INTO Members (HCNumber, Forename, Surname, Gender, Age, Weight, Address, BloodPressure, Systolic, Diastolic, VisitTally, FConsultation) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        long start = System.nanoTime();
+
+        try (Connection conn = centre.getDb().getConnection()) {
+            int nextId = nextFreeHcNumber(conn, centre);
+            if ((long) nextId + count - 1 > centre.getLastHcNumber()) {
+                throw new SQLException("Not enough HC Numbers left in " + centre + " for " + count + " members");
+            }
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < count; i++) {
+                    HCMember m = nextMember(String.valueOf(nextId + i));
+                    pstmt.setString(1, m.getHCNumber());
+                    pstmt.setString(2, m.getForename());
+                    pstmt.setString(3, m.getSurname());
+                    pstmt.setString(4, String.valueOf(m.getGender()));
+                    pstmt.setInt(5, m.getAge());
+                    pstmt.setDouble(6, m.getWeight());
+                    pstmt.setString(7, m.getAddress());
+                    pstmt.setString(8, m.getBloodPressure());
+                    pstmt.setInt(9, m.getSystolic());
+                    pstmt.setInt(10, m.getDiastolic());
+                    pstmt.setInt(11, m.getVisitTally());
+                    pstmt.setBoolean(12, m.isFConsultation());
+                    pstmt.addBatch();
+
+                    if ((i + 1) % batchSize == 0 || i == count - 1) {
+                        pstmt.executeBatch();
+                        conn.commit();
+                        centre.getDb().recordWrite();
+                    }
+                    if ((i + 1) % 100_000 == 0) {
+                        System.out.println("  " + (i + 1) + " members generated...");
+                    }
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d members in %.1f s (%.0f rows/s)\n", count, seconds, count / seconds);
+        return count;
+    }
+
+    private static int nextFreeHcNumber(Connection conn, Centre centre) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(" + centre.getDb().getDialect().toInteger("HCNumber") + ") FROM Members")) {
+            int max = rs.next() ? rs.getInt(1) : 0;
+            return Math.max(max + 1, centre.getFirstHcNumber());
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: PopulationGenerator <count> [batchSize] [seed] [centre]");
+            return;
+        }
+        int count = Integer.parseInt(args[0]);
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+        int centre = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+        try {
+            new PopulationGenerator(seed).generateIntoDatabase(Centre.of(centre), count, batchSize);
+        } catch (SQLException | IllegalArgumentException e) {
+            System.out.println("Error generating members: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+/*
+ * RankField.java
+ * The member values that ranked (top-K) lists can be ordered by.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.Comparator;
+
+public enum RankField {
+    VISITS("Most frequent visitors", MemberField.VISITS),
+    AGE("Oldest members", MemberField.AGE),
+    WEIGHT("Heaviest members", MemberField.WEIGHT);
+
+    private final String title;
+    private final MemberField field;
+
+    RankField(String title, MemberField field) {
+        this.title = title;
+        this.field = field;
+    }
+
+    /**
+     * @return Heading used when the ranked list is displayed.
+     */
+    public String getTitle() { return title; }
+
+    /**
+     * @return The member field a ranking depends on (used for cache invalidation).
+     */
+    public MemberField getField() { return field; }
+
+    /**
+     * Returns the value being ranked for a member.
+     */
+    public double valueOf(HCMember m) {
+        switch (this) {
+            case VISITS: return m.getVisitTally();
+            case AGE: return m.getAge();
+            default: return m.getWeight();
+        }
+    }
+
+    /**
+     * Orders members from lowest to highest value, ties broken so that the
+     * lower HC Number ranks higher.
+     */
+    public Comparator<HCMember> ascending() {
+        return Comparator.<HCMember>comparingDouble(this::valueOf)
+            .thenComparing(HCMember::getHCNumber, Comparator.reverseOrder());
+    }
+}
\ No newline at end of file
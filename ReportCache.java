@@ -0,0 +1,112 @@
+/*
+ * ReportCache.java
+ * A bounded LRU cache for stats report results.
+ * Each entry remembers the data version it was built from; a lookup with a
+ * newer version treats the entry as stale and rebuilds it.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class ReportCache {
+
+    /** A cached result together with the version it was computed at. */
+    private static class Entry {
+        final long version;
+        final List<HCMember> result;
+
+        Entry(long version, List<HCMember> result) {
+            this.version = version;
+            this.result = result;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructor.
+     * @param maxEntries The maximum number of reports kept before the least recently used is evicted.
+     */
+    public ReportCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        // Access order gives us LRU ordering for free
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ReportCache.Entry> eldest) {
+                if (size() > ReportCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for a report, rebuilding it if missing or stale.
+     * @param key     Report name plus its parameters, e.g. "gender:M".
+     * @param version The current version of the data the report depends on.
+     * @param builder Computes the report when the cache cannot answer.
+     * @return An unmodifiable list of matching members.
+     */
+    public List<HCMember> get(String key, long version, Supplier<List<HCMember>> builder) {
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null && e.version == version) {
+                hits++;
+                return e.result;
+            }
+            misses++;
+        }
+
+        // Build outside the lock so other reports can still be served
+        List<HCMember> result = Collections.unmodifiableList(builder.get());
+        synchronized (this) {
+            entries.put(key, new Entry(version, result));
+        }
+        return result;
+    }
+
+    /**
+     * Stores a report result that was computed elsewhere (e.g. by a combined pass).
+     * @param key     Report name plus its parameters.
+     * @param version The data version the result was built from.
+     * @param result  The matching members.
+     */
+    public synchronized void put(String key, long version, List<HCMember> result) {
+        entries.put(key, new Entry(version, Collections.unmodifiableList(result)));
+    }
+
+    /**
+     * Removes every cached report.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // =========================================================================
+    // Statistics
+    // =========================================================================
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized int getSize() { return entries.size(); }
+
+    /**
+     * @return Fraction of lookups answered from the cache (0.0 - 1.0).
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
\ No newline at end of file
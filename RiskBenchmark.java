@@ -0,0 +1,106 @@
+/*
+ * RiskBenchmark.java
+ * Measures health-risk scoring throughput: object by object through the
+ * HCMember getters, then over member columns with the scalar kernel and
+ * (if loaded) the Vector API kernel, on one core and on every core.
+ * Members are generated in memory, so no database is needed.
+ *
+ * Usage: java HealthCentreMemberSystem.RiskBenchmark [members] [rounds]
+ * Add --add-modules jdk.incubator.vector (and the built vector kernel on the
+ * classpath) to include the vector kernel.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class RiskBenchmark {
+
+    private RiskBenchmark() {
+    }
+
+    /**
+     * The same model as RiskKernel, computed one HCMember at a time.
+     */
+    private static float[] scoreObjects(List<HCMember> members) {
+        float[] scores = new float[members.size()];
+        for (int i = 0; i < scores.length; i++) {
+            HCMember m = members.get(i);
+            float s = "High".equalsIgnoreCase(m.getBloodPressure()) ? RiskKernel.HIGH_BP_POINTS
+                : "Low".equalsIgnoreCase(m.getBloodPressure()) ? RiskKernel.LOW_BP_POINTS : 0f;
+            s = s + Math.max(0f, m.getAge() - RiskKernel.AGE_FROM) * RiskKernel.AGE_POINTS;
+            s = s + Math.max(0f, (float) m.getWeight() - RiskKernel.WEIGHT_FROM) * RiskKernel.WEIGHT_POINTS;
+            s = s + Math.max(0f, m.getSystolic() - RiskKernel.SYSTOLIC_FROM) * RiskKernel.SYSTOLIC_POINTS;
+            s = s + Math.max(0f, m.getDiastolic() - RiskKernel.DIASTOLIC_FROM) * RiskKernel.DIASTOLIC_POINTS;
+            s = s + Math.max(0f, RiskKernel.VISITS_EXPECTED - m.getVisitTally()) * RiskKernel.VISIT_POINTS;
+            scores[i] = Math.min(RiskKernel.MAX_SCORE, s);
+        }
+        return scores;
+    }
+
+    /**
+     * Runs a scoring method for the given rounds (after a warm-up) and prints its throughput.
+     * @return The scores of the last round.
+     */
+    private static float[] measure(String name, int members, int rounds, Supplier<float[]> run) {
+        for (int i = 0; i < Math.max(3, rounds / 2); i++) {
+            run.get();
+        }
+        long best = Long.MAX_VALUE;
+        float[] scores = null;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            scores = run.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-34s %10.2f ms %12.1f M members/s\n", name, best / 1e6, members / (best / 1e3));
+        return scores;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        PopulationGenerator generator = new PopulationGenerator(42L);
+        List<HCMember> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            members.add(generator.nextMember(String.valueOf(100001 + i)));
+        }
+        MemberColumns columns = MemberColumns.of(members);
+        RiskKernel scalar = new ScalarRiskKernel();
+        RiskKernel loaded = RiskScoring.kernel();
+
+        System.out.println("Scoring " + count + " members, best of " + rounds + " rounds, "
+            + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.println("--------------------------------------------------------------------------------");
+        float[] expected = measure("objects (getters), 1 core", count, rounds, () -> scoreObjects(members));
+        measure("column copy, all cores", count, rounds, () -> {
+            MemberColumns.of(members);
+            return null;
+        });
+        List<float[]> results = new ArrayList<>();
+        results.add(measure("scalar kernel, 1 core", count, rounds, () -> runKernel(columns, scalar, false)));
+        results.add(measure("scalar kernel, all cores", count, rounds, () -> runKernel(columns, scalar, true)));
+        if (!(loaded instanceof ScalarRiskKernel)) {
+            results.add(measure(loaded.name() + ", 1 core", count, rounds, () -> runKernel(columns, loaded, false)));
+            results.add(measure(loaded.name() + ", all cores", count, rounds, () -> runKernel(columns, loaded, true)));
+        } else {
+            System.out.println("Vector kernel not loaded (build it and run with --add-modules jdk.incubator.vector)");
+        }
+        System.out.println("--------------------------------------------------------------------------------");
+        boolean same = true;
+        for (float[] r : results) {
+            same &= Arrays.equals(expected, r);
+        }
+        System.out.println("All methods give identical scores: " + same);
+    }
+
+    /**
+     * Runs a kernel into a plain array (no ranking), so only the scoring is timed.
+     */
+    private static float[] runKernel(MemberColumns c, RiskKernel kernel, boolean parallel) {
+        return RiskScoring.scores(c, kernel, parallel);
+    }
+}
\ No newline at end of file
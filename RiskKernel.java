@@ -0,0 +1,42 @@
+/*
+ * RiskKernel.java
+ * Computes health-risk scores over member columns. The scalar kernel always
+ * works; a Vector API kernel is used instead where the JDK provides it
+ * (see RiskScoring). Both use the model below and give identical scores.
+ *
+ * Score (0-100, higher is more at risk), the sum of:
+ *   blood pressure category   High 30, Low 10
+ *   age                       0.3 per year over 40
+ *   weight                    0.4 per kg over 90 (no height is recorded, so no BMI)
+ *   systolic reading          0.2 per mmHg over 130
+ *   diastolic reading         0.3 per mmHg over 85
+ *   visits                    2 per visit short of 5
+ */
+package HealthCentreMemberSystem;
+
+public interface RiskKernel {
+
+    float HIGH_BP_POINTS = 30f;
+    float LOW_BP_POINTS = 10f;
+    float AGE_FROM = 40f;
+    float AGE_POINTS = 0.3f;
+    float WEIGHT_FROM = 90f;
+    float WEIGHT_POINTS = 0.4f;
+    float SYSTOLIC_FROM = 130f;
+    float SYSTOLIC_POINTS = 0.2f;
+    float DIASTOLIC_FROM = 85f;
+    float DIASTOLIC_POINTS = 0.3f;
+    float VISITS_EXPECTED = 5f;
+    float VISIT_POINTS = 2f;
+    float MAX_SCORE = 100f;
+
+    /**
+     * Scores the members from (inclusive) to to (exclusive).
+     * @param c   The member columns.
+     * @param out Receives each member's score, at the member's index.
+     */
+    void score(MemberColumns c, float[] out, int from, int to);
+
+    /** @return A short name for reports and benchmarks. */
+    String name();
+}
\ No newline at end of file
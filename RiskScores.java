@@ -0,0 +1,94 @@
+/*
+ * RiskScores.java
+ * The result of one health-risk scoring run: every member's score, kept
+ * until the next run so the at-risk reports can be produced at any time.
+ */
+package HealthCentreMemberSystem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public class RiskScores {
+
+    /** One member's score. */
+    public static class Entry {
+        private final String hcNumber;
+        private final float score;
+
+        Entry(String hcNumber, float score) {
+            this.hcNumber = hcNumber;
+            this.score = score;
+        }
+
+        public String getHcNumber() { return hcNumber; }
+        public float getScore() { return score; }
+    }
+
+    private final String[] hcNumbers;
+    private final float[] scores;
+    private final LocalDateTime computedAt;
+    private final String kernel;
+    /** HC Number to position, built when a single score is first asked for. */
+    private Map<String, Integer> positions;
+
+    RiskScores(String[] hcNumbers, float[] scores, String kernel) {
+        this.hcNumbers = hcNumbers;
+        this.scores = scores;
+        this.kernel = kernel;
+        this.computedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Returns the K members most at risk, highest score first (ties go to the
+     * lower HC Number). A bounded heap, so only K entries are ever held.
+     */
+    public List<Entry> top(int k) {
+        if (k <= 0) return new ArrayList<>();
+        // Min-heap on score: the head is the least at risk of the current top K
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, (a, b) -> {
+            int c = Float.compare(scores[a], scores[b]);
+            return c != 0 ? c : hcNumbers[b].compareTo(hcNumbers[a]);
+        });
+        for (int i = 0; i < scores.length; i++) {
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (heap.comparator().compare(i, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        List<Entry> ranked = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            int i = heap.poll();
+            ranked.add(new Entry(hcNumbers[i], scores[i]));
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    /**
+     * Returns one member's score.
+     * @return The score, or -1 if the member was not scored in this run.
+     */
+    public synchronized float scoreOf(String hcNumber) {
+        if (positions == null) {
+            positions = new HashMap<>(hcNumbers.length * 2);
+            for (int i = 0; i < hcNumbers.length; i++) {
+                positions.put(hcNumbers[i], i);
+            }
+        }
+        Integer i = positions.get(hcNumber);
+        return i != null ? scores[i] : -1f;
+    }
+
+    /** @return The number of members scored. */
+    public int size() { return scores.length; }
+    public LocalDateTime getComputedAt() { return computedAt; }
+    /** @return The kernel that computed the scores. */
+    public String getKernel() { return kernel; }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+/*
+ * RiskScoring.java
+ * Batch health-risk scoring of every member. The members' data is copied
+ * into columns, then the scoring kernel runs over slices of the columns on
+ * every core at once.
+ *
+ * The Vector API kernel (vector/VectorRiskKernel.java) is used when it has
+ * been built and the JVM runs with --add-modules jdk.incubator.vector;
+ * otherwise, or with -Dhcms.risk.vector=false, the scalar kernel is used.
+ */
+package HealthCentreMemberSystem;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+public final class RiskScoring {
+
+    /** Members per slice handed to one core. */
+    private static final int SLICE = 1 << 16;
+
+    private static final RiskKernel KERNEL = loadKernel();
+
+    private RiskScoring() {
+    }
+
+    /**
+     * Returns the Vector API kernel if it can be loaded, otherwise the scalar one.
+     */
+    private static RiskKernel loadKernel() {
+        if (Boolean.parseBoolean(System.getProperty("hcms.risk.vector", "true"))) {
+            try {
+                return (RiskKernel) Class.forName("HealthCentreMemberSystem.VectorRiskKernel")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not built, or the incubator module is not enabled
+            }
+        }
+        return new ScalarRiskKernel();
+    }
+
+    /** @return The kernel used by score(). */
+    public static RiskKernel kernel() {
+        return KERNEL;
+    }
+
+    /**
+     * Scores a list of members. The list must not change while it is read.
+     */
+    public static RiskScores score(List<HCMember> members) {
+        return score(MemberColumns.of(members), KERNEL, true);
+    }
+
+    /**
+     * Scores member columns with the given kernel.
+     * @param parallel True to split the work across every core.
+     */
+    public static RiskScores score(MemberColumns c, RiskKernel kernel, boolean parallel) {
+        return new RiskScores(c.hcNumbers, scores(c, kernel, parallel), kernel.name());
+    }
+
+    /**
+     * Runs the kernel over every slice of the columns.
+     * @return The scores, by member index.
+     */
+    static float[] scores(MemberColumns c, RiskKernel kernel, boolean parallel) {
+        float[] scores = new float[c.size];
+        int slices = (c.size + SLICE - 1) / SLICE;
+        IntStream range = IntStream.range(0, slices);
+        (parallel ? range.parallel() : range).forEach(s ->
+            kernel.score(c, scores, s * SLICE, Math.min(c.size, (s + 1) * SLICE)));
+        return scores;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,219 @@
+/*
+ * RowRenderer.java
+ * Writes member list rows to the console in large blocks.
+ * Rows are laid out straight into a reusable character buffer (the same
+ * columns HCMember.memberDetails produces, without going through
+ * String.format), and the buffer is written out when full or flushed,
+ * rather than one autoflushed print per member.
+ */
+package HealthCentreMemberSystem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+public class RowRenderer {
+
+    /** Characters buffered before a write. */
+    private static final int BLOCK_SIZE = 32 * 1024;
+
+    /** Column widths of a member row: ID, forename, surname, sex, age, blood pressure. */
+    private static final int[] WIDTHS = {10, 15, 15, 5, 5, 10};
+
+    private final Writer out;
+    private char[] buf = new char[BLOCK_SIZE];
+    private int pos;
+
+    /**
+     * Constructor.
+     * Writes to the console.
+     */
+    public RowRenderer() {
+        this(System.out);
+    }
+
+    /**
+     * Constructor.
+     * @param out Where the rows are written.
+     */
+    public RowRenderer(OutputStream out) {
+        this.out = new OutputStreamWriter(out, Charset.defaultCharset());
+    }
+
+    // =========================================================================
+    // Rows
+    // =========================================================================
+
+    /**
+     * Appends the list header (column titles and rule).
+     */
+    public RowRenderer header() {
+        column("ID", WIDTHS[0]).column("First Name", WIDTHS[1]).column("Surname", WIDTHS[2])
+            .column("Sex", WIDTHS[3]).column("Age", WIDTHS[4]).lastColumn("BP", WIDTHS[5]);
+        return text("----------------------------------------------------------------\n");
+    }
+
+    /**
+     * Appends one member row.
+     */
+    public RowRenderer row(HCMember m) {
+        column(m.getHCNumber(), WIDTHS[0]);
+        column(m.getForename(), WIDTHS[1]);
+        column(m.getSurname(), WIDTHS[2]);
+        ensure(WIDTHS[3] + 1);
+        buf[pos++] = m.getGender();
+        spaces(WIDTHS[3] - 1);
+        buf[pos++] = ' ';
+        number(m.getAge(), WIDTHS[4]);
+        buf[pos++] = ' ';
+        return lastColumn(m.getBloodPressure(), WIDTHS[5]);
+    }
+
+    /**
+     * Appends a ranked row: the rank, the value ranked by, then the member row.
+     */
+    public RowRenderer rankedRow(int rank, RankField field, HCMember m) {
+        // Room for the whole prefix, so it is never split by a write
+        ensure(64);
+        number(rank, 4);
+        buf[pos++] = ' ';
+        int start = pos;
+        switch (field) {
+            case VISITS -> number(m.getVisitTally(), 0).text(" visits");
+            case AGE -> number(m.getAge(), 0).text(" yrs");
+            default -> decimal(m.getWeight()).text(" kg");
+        }
+        spaces(11 - (pos - start));
+        buf[pos++] = ' ';
+        return row(m);
+    }
+
+    /**
+     * Appends a scored row: the rank, the risk score, then the member row.
+     */
+    public RowRenderer scoredRow(int rank, float score, HCMember m) {
+        ensure(64);
+        number(rank, 4);
+        buf[pos++] = ' ';
+        int start = pos;
+        decimal(score).text(" risk");
+        spaces(11 - (pos - start));
+        buf[pos++] = ' ';
+        return row(m);
+    }
+
+    /**
+     * Appends plain text.
+     */
+    public RowRenderer text(String s) {
+        ensure(s.length());
+        s.getChars(0, s.length(), buf, pos);
+        pos += s.length();
+        return this;
+    }
+
+    /**
+     * Appends a value left-aligned in a column, then the column gap.
+     */
+    private RowRenderer column(String value, int width) {
+        String s = String.valueOf(value);
+        ensure(Math.max(s.length(), width) + 1);
+        s.getChars(0, s.length(), buf, pos);
+        pos += s.length();
+        spaces(width - s.length());
+        buf[pos++] = ' ';
+        return this;
+    }
+
+    /**
+     * Appends a value left-aligned in the last column, then the line break.
+     */
+    private RowRenderer lastColumn(String value, int width) {
+        column(value, width);
+        buf[pos - 1] = '\n';
+        return this;
+    }
+
+    /**
+     * Appends a whole number left-aligned in a column of the given width (no gap).
+     */
+    private RowRenderer number(long value, int width) {
+        ensure(Math.max(20, width) + 1);
+        int start = pos;
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int digitsStart = pos;
+        do {
+            buf[pos++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // Digits were written lowest first
+        for (int i = digitsStart, j = pos - 1; i < j; i++, j--) {
+            char c = buf[i];
+            buf[i] = buf[j];
+            buf[j] = c;
+        }
+        spaces(width - (pos - start));
+        return this;
+    }
+
+    /**
+     * Appends a value with one decimal place, rounded half up like %.1f.
+     */
+    private RowRenderer decimal(double value) {
+        long tenths = Math.round(Math.abs(value) * 10);
+        if (value < 0 && tenths > 0) text("-");
+        number(tenths / 10, 0);
+        ensure(2);
+        buf[pos++] = '.';
+        buf[pos++] = (char) ('0' + tenths % 10);
+        return this;
+    }
+
+    private void spaces(int count) {
+        for (int i = 0; i < count; i++) {
+            buf[pos++] = ' ';
+        }
+    }
+
+    // =========================================================================
+    // Output
+    // =========================================================================
+
+    /**
+     * Makes room for n more characters, writing out the buffer if needed.
+     */
+    private void ensure(int n) {
+        if (pos + n <= buf.length) return;
+        writeBuffer();
+        if (n > buf.length) {
+            buf = Arrays.copyOf(buf, n);
+        }
+    }
+
+    private void writeBuffer() {
+        try {
+            out.write(buf, 0, pos);
+        } catch (IOException e) {
+            System.out.println("Error writing to console: " + e.getMessage());
+        }
+        pos = 0;
+    }
+
+    /**
+     * Writes out everything appended so far.
+     */
+    public void flush() {
+        writeBuffer();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.out.println("Error writing to console: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+/*
+ * ScalarRiskKernel.java
+ * Scores one member per loop iteration. Used wherever the Vector API is not
+ * available, and for the members left over after the last full vector.
+ */
+package HealthCentreMemberSystem;
+
+public class ScalarRiskKernel implements RiskKernel {
+
+    @Override
+    public void score(MemberColumns c, float[] out, int from, int to) {
+        scoreRange(c, out, from, to);
+    }
+
+    static void scoreRange(MemberColumns c, float[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            float category = c.bpCategory[i];
+            float s = category == MemberColumns.BP_HIGH ? HIGH_BP_POINTS
+                : category == MemberColumns.BP_LOW ? LOW_BP_POINTS : 0f;
+            s = s + Math.max(0f, c.age[i] - AGE_FROM) * AGE_POINTS;
+            s = s + Math.max(0f, c.weight[i] - WEIGHT_FROM) * WEIGHT_POINTS;
+            s = s + Math.max(0f, c.systolic[i] - SYSTOLIC_FROM) * SYSTOLIC_POINTS;
+            s = s + Math.max(0f, c.diastolic[i] - DIASTOLIC_FROM) * DIASTOLIC_POINTS;
+            s = s + Math.max(0f, VISITS_EXPECTED - c.visits[i]) * VISIT_POINTS;
+            out[i] = Math.min(MAX_SCORE, s);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,431 @@
+/*
+ * ShardedMemberManager.java
+ * Runs several health centres from one desk (-Dhcms.centres=0,1,2).
+ * Each centre's members live in its own database and are handled by their
+ * own MemberManager (a shard). Lookups and changes go straight to the shard
+ * that owns the member, worked out from the HC Number; new members join the
+ * desk's own centre (-Dhcms.centre). Reports run on every shard at once and
+ * the results are joined in centre order. Each centre's numbers lie above the
+ * previous centre's and each shard lists its members in numeric HC Number
+ * order (loaded sorted, new numbers only going up), so the joined report is
+ * in HC Number order too; a member stored outside its centre's range, or
+ * restored from the outbox after start-up, can fall out of it.
+ */
+package HealthCentreMemberSystem;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+public class ShardedMemberManager implements MemberService {
+
+    private static final LatencyHistogram SCATTER = Metrics.histogram("shards.scatter");
+
+    /** One manager per centre, by centre code (so the centres' HC Number ranges ascend). */
+    private final Map<Integer, MemberManager> shards = new TreeMap<>();
+    /** The centre this desk belongs to: new members join it. */
+    private final MemberManager home;
+    /** Runs the per-shard part of each query, one thread per shard. */
+    private final ExecutorService pool;
+
+    /**
+     * Constructor.
+     * Opens the centres listed in -Dhcms.centres; the desk's own centre is
+     * -Dhcms.centre (default the first listed).
+     */
+    public ShardedMemberManager() {
+        this(Centre.configured());
+    }
+
+    private ShardedMemberManager(List<Centre> centres) {
+        this(centres, Integer.getInteger("hcms.centre", centres.get(0).getCode()));
+    }
+
+    /**
+     * Constructor.
+     * Opens every centre at the same time, each loading from its own database.
+     * @param centres    The centres to run.
+     * @param homeCentre The code of the centre new members join.
+     * @throws IllegalArgumentException if a centre is listed twice or the home centre is not listed.
+     */
+    public ShardedMemberManager(List<Centre> centres, int homeCentre) {
+        this.pool = Executors.newFixedThreadPool(centres.size(), r -> {
+            Thread t = new Thread(r, "shard-query");
+            t.setDaemon(true);
+            return t;
+        });
+
+        Map<Integer, CompletableFuture<MemberManager>> opening = new TreeMap<>();
+        for (Centre c : centres) {
+            if (opening.containsKey(c.getCode())) {
+                pool.shutdown();
+                throw new IllegalArgumentException("Centre " + c.getCode() + " is listed twice");
+            }
+            opening.put(c.getCode(), CompletableFuture.supplyAsync(() -> new MemberManager(c), pool));
+        }
+        for (Map.Entry<Integer, CompletableFuture<MemberManager>> e : opening.entrySet()) {
+            shards.put(e.getKey(), e.getValue().join());
+        }
+
+        this.home = shards.get(homeCentre);
+        if (home == null) {
+            close();
+            throw new IllegalArgumentException("The desk's centre " + homeCentre + " is not in hcms.centres");
+        }
+    }
+
+    // =========================================================================
+    // Routing
+    // =========================================================================
+
+    /**
+     * Returns the shard that owns an HC Number, or null if no configured centre does.
+     */
+    private MemberManager shardOf(String hcNumber) {
+        return shards.get(Centre.codeOf(hcNumber));
+    }
+
+    /**
+     * Runs a query on every shard in parallel.
+     * @return The shards' results, in centre order.
+     */
+    private <T> List<T> scatter(Function<MemberManager, T> query) {
+        long start = Metrics.start();
+        List<CompletableFuture<T>> parts = new ArrayList<>();
+        for (MemberManager shard : shards.values()) {
+            parts.add(CompletableFuture.supplyAsync(() -> query.apply(shard), pool));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> part : parts) {
+                results.add(part.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        SCATTER.recordSince(start);
+        return results;
+    }
+
+    // =========================================================================
+    // Members
+    // =========================================================================
+
+    /**
+     * Adds a new member to the desk's own centre.
+     */
+    @Override
+    public HCMember addMember(String forename, String surname, char gender, int age, double weight, String address) {
+        return home.addMember(forename, surname, gender, age, weight, address);
+    }
+
+    @Override
+    public HCMember findMemberByHCNumber(String hcNumber) {
+        MemberManager shard = shardOf(hcNumber);
+        return shard != null ? shard.findMemberByHCNumber(hcNumber) : null;
+    }
+
+    @Override
+    public List<HCMember> getAllMembers() {
+        List<List<HCMember>> parts = new ArrayList<>();
+        for (MemberManager shard : shards.values()) {
+            parts.add(shard.getAllMembers());
+        }
+        return new Concatenation(parts);
+    }
+
+    @Override
+    public int getTotalCount() {
+        int total = 0;
+        for (int count : scatter(MemberManager::getTotalCount)) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Fetches the missing addresses of these members, each from its own centre.
+     */
+    @Override
+    public void loadAddresses(List<HCMember> members) {
+        Map<Integer, List<HCMember>> byCentre = new HashMap<>();
+        for (HCMember m : members) {
+            byCentre.computeIfAbsent(Centre.codeOf(m.getHCNumber()), c -> new ArrayList<>()).add(m);
+        }
+        scatter(shard -> {
+            List<HCMember> own = byCentre.get(shard.getCentre().getCode());
+            if (own != null) {
+                shard.loadAddresses(own);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reads the addresses of these members, each from its own centre, without caching them.
+     */
+    @Override
+    public Map<String, String> readAddresses(List<HCMember> members) {
+        Map<Integer, List<HCMember>> byCentre = new HashMap<>();
+        for (HCMember m : members) {
+            byCentre.computeIfAbsent(Centre.codeOf(m.getHCNumber()), c -> new ArrayList<>()).add(m);
+        }
+        Map<String, String> found = new HashMap<>();
+        for (Map<String, String> part : scatter(shard -> {
+            List<HCMember> own = byCentre.get(shard.getCentre().getCode());
+            return own != null ? shard.readAddresses(own) : new HashMap<String, String>();
+        })) {
+            found.putAll(part);
+        }
+        return found;
+    }
+
+    // =========================================================================
+    // Reports (scatter-gather)
+    // =========================================================================
+
+    @Override
+    public List<HCMember> getMembersByGender(char gender) {
+        return new Concatenation(scatter(shard -> shard.getMembersByGender(gender)));
+    }
+
+    @Override
+    public List<HCMember> getHighBloodPressureMembers() {
+        return new Concatenation(scatter(MemberManager::getHighBloodPressureMembers));
+    }
+
+    @Override
+    public List<HCMember> getMembersDueForConsultation() {
+        return new Concatenation(scatter(MemberManager::getMembersDueForConsultation));
+    }
+
+    @Override
+    public List<HCMember> getMembersWithLowVisits(int threshold) {
+        return new Concatenation(scatter(shard -> shard.getMembersWithLowVisits(threshold)));
+    }
+
+    /**
+     * Takes the top K of every centre, then the top K of those.
+     */
+    @Override
+    public List<HCMember> getTopMembers(RankField field, int k) {
+        return MemberRanking.topK(new Concatenation(scatter(shard -> shard.getTopMembers(field, k))), field, k);
+    }
+
+    @Override
+    public StatsPack runAllReports(int visitThreshold) {
+        long start = Metrics.start();
+        List<StatsPack> packs = scatter(shard -> shard.runAllReports(visitThreshold));
+        int total = 0;
+        List<List<HCMember>> males = new ArrayList<>();
+        List<List<HCMember>> females = new ArrayList<>();
+        List<List<HCMember>> highBloodPressure = new ArrayList<>();
+        List<List<HCMember>> dueConsultation = new ArrayList<>();
+        List<List<HCMember>> lowVisits = new ArrayList<>();
+        for (StatsPack p : packs) {
+            total += p.getTotal();
+            males.add(p.getMales());
+            females.add(p.getFemales());
+            highBloodPressure.add(p.getHighBloodPressure());
+            dueConsultation.add(p.getDueConsultation());
+            lowVisits.add(p.getLowVisits());
+        }
+        StatsPack pack = new StatsPack(visitThreshold, total, new Concatenation(males), new Concatenation(females),
+            new Concatenation(highBloodPressure), new Concatenation(dueConsultation), new Concatenation(lowVisits));
+        Metrics.FILTER_ALL_REPORTS.recordSince(start);
+        return pack;
+    }
+
+    // =========================================================================
+    // Health Risk Scoring
+    // =========================================================================
+
+    /**
+     * Scores every centre's members at the same time.
+     */
+    @Override
+    public int scoreHealthRisks() {
+        int scored = 0;
+        for (int count : scatter(MemberManager::scoreHealthRisks)) {
+            scored += count;
+        }
+        return scored;
+    }
+
+    /**
+     * Takes the K most at risk in every centre, then the K highest of those.
+     */
+    @Override
+    public List<RiskScores.Entry> getAtRiskMembers(int k) {
+        List<RiskScores.Entry> merged = new ArrayList<>();
+        for (List<RiskScores.Entry> part : scatter(shard -> shard.getAtRiskMembers(k))) {
+            merged.addAll(part);
+        }
+        // Highest score first; ties go to the lower HC Number, as within a centre
+        merged.sort((a, b) -> {
+            int c = Float.compare(b.getScore(), a.getScore());
+            return c != 0 ? c : Integer.compare(Integer.parseInt(a.getHcNumber()), Integer.parseInt(b.getHcNumber()));
+        });
+        return merged.size() > k ? new ArrayList<>(merged.subList(0, k)) : merged;
+    }
+
+    // =========================================================================
+    // Duplicate Detection
+    // =========================================================================
+
+    /**
+     * Looks for duplicates across all centres together, since a person may
+     * have enrolled at two of them. Each centre's members are copied at the
+     * same time, and addresses are fetched from the centre that owns them.
+     */
+    @Override
+    public List<MergeSuggestion> findDuplicates() {
+        long start = Metrics.start();
+        List<HCMember> all = new ArrayList<>();
+        for (List<HCMember> part : scatter(MemberManager::snapshotMembers)) {
+            all.addAll(part);
+        }
+        List<MergeSuggestion> found = DuplicateDetector.configured().findDuplicates(all, this::readAddresses);
+        Metrics.histogram("dedup.run").recordSince(start);
+        return found;
+    }
+
+    // =========================================================================
+    // Bulk Changes
+    // =========================================================================
+
+    @Override
+    public void resetAllConsultations() {
+        scatter(shard -> {
+            shard.resetAllConsultations();
+            return null;
+        });
+    }
+
+    /**
+     * Re-reads the blood pressure rules once and, if they changed, has every
+     * centre reclassify its members in parallel.
+     */
+    @Override
+    public int reloadBloodPressureRules() throws IOException {
+        BloodPressureRules rules = BloodPressureRules.load(BloodPressureRules.configuredFile());
+        if (rules.equals(BloodPressureRules.current())) {
+            return 0;
+        }
+        BloodPressureRules.setCurrent(rules);
+        int changed = 0;
+        for (int count : scatter(MemberManager::reclassifyBloodPressure)) {
+            changed += count;
+        }
+        return changed;
+    }
+
+    /**
+     * Closes every centre at once (each gives its queued writes a few seconds).
+     */
+    @Override
+    public void close() {
+        scatter(shard -> {
+            shard.close();
+            return null;
+        });
+        pool.shutdown();
+    }
+
+    // =========================================================================
+    // Getters
+    // =========================================================================
+
+    /**
+     * Returns the shard for a centre, or null if the centre is not run here.
+     */
+    public MemberManager getShard(int centre) {
+        return shards.get(centre);
+    }
+
+    /** @return Every shard, in centre order. */
+    public Collection<MemberManager> getShards() {
+        return Collections.unmodifiableCollection(shards.values());
+    }
+
+    /** @return The desk's own centre. */
+    public Centre getHomeCentre() {
+        return home.getCentre();
+    }
+
+    // =========================================================================
+    // Merged Results
+    // =========================================================================
+
+    /**
+     * The shards' results read one after another, without copying them.
+     * Lazy results (pushdown mode) stay lazy. Iterating uses each part's own
+     * iterator; get(i) walks the parts to find the one holding i.
+     */
+    private static class Concatenation extends AbstractList<HCMember> {
+        private final List<List<HCMember>> parts;
+
+        Concatenation(List<List<HCMember>> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (List<HCMember> part : parts) {
+                size += part.size();
+            }
+            return size;
+        }
+
+        @Override
+        public HCMember get(int index) {
+            if (index < 0) throw new IndexOutOfBoundsException(index);
+            int offset = index;
+            for (List<HCMember> part : parts) {
+                int size = part.size();
+                if (offset < size) {
+                    return part.get(offset);
+                }
+                offset -= size;
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        public Iterator<HCMember> iterator() {
+            return new Iterator<HCMember>() {
+                private final Iterator<List<HCMember>> remaining = parts.iterator();
+                private Iterator<HCMember> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && remaining.hasNext()) {
+                        current = remaining.next().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public HCMember next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return current.next();
+                }
+            };
+        }
+    }
+}
\ No newline at end of file
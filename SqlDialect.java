@@ -0,0 +1,57 @@
+/*
+ * SqlDialect.java
+ * The few pieces of SQL that differ between databases. SQL Server (the
+ * production database) takes the ISO forms, which embedded databases such
+ * as H2, HSQLDB and Derby take as well; MySQL, MariaDB and SQLite page with
+ * LIMIT instead. The dialect is worked out from the JDBC URL.
+ */
+package HealthCentreMemberSystem;
+
+public enum SqlDialect {
+
+    STANDARD(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY", " OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY", "INT"),
+    MYSQL(" LIMIT ?, ?", " LIMIT ?", "SIGNED"),
+    SQLITE(" LIMIT ?, ?", " LIMIT ?", "INTEGER");
+
+    private final String page;
+    private final String first;
+    private final String integerType;
+
+    SqlDialect(String page, String first, String integerType) {
+        this.page = page;
+        this.first = first;
+        this.integerType = integerType;
+    }
+
+    /**
+     * Returns the dialect of the database a JDBC URL points at.
+     */
+    public static SqlDialect of(String url) {
+        if (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:")) return MYSQL;
+        if (url.startsWith("jdbc:sqlite:")) return SQLITE;
+        return STANDARD;
+    }
+
+    /**
+     * Returns the clause that follows an ORDER BY to read one page:
+     * it takes the rows to skip, then the rows to read, as parameters.
+     */
+    public String page() {
+        return page;
+    }
+
+    /**
+     * Returns the clause that follows an ORDER BY to read only the first
+     * rows: it takes how many as a parameter.
+     */
+    public String first() {
+        return first;
+    }
+
+    /**
+     * Returns an expression converting a text column to an integer.
+     */
+    public String toInteger(String column) {
+        return "CAST(" + column + " AS " + integerType + ")";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,408 @@
+/*
+ * SqlMemberQueries.java
+ * Runs member lookups and reports as SQL instead of holding every member in
+ * memory (MemberManager with -Dhcms.store=sql). Meant for thin desk clients:
+ * nothing is loaded at start-up and the heap only ever holds one page of
+ * results per list being read.
+ *
+ * Statements are prepared once per connection and reused. Report results
+ * are lazy lists: the count is read when first asked for, and members are
+ * fetched a page at a time in HC Number order as the list is read. HC Numbers
+ * are stored as text, so they are compared as integers (SqlDialect.toInteger):
+ * "1000001" would otherwise sort before "200000".
+ * The owner can bring every member read up to date with its own writes
+ * not yet saved (see setOverlay).
+ * Suggested indexes for the report filters:
+ *   CREATE INDEX IX_Members_Gender ON Members (Gender, HCNumber);
+ *   CREATE INDEX IX_Members_BloodPressure ON Members (BloodPressure, HCNumber);
+ *   CREATE INDEX IX_Members_FConsultation ON Members (FConsultation, HCNumber);
+ *   CREATE INDEX IX_Members_VisitTally ON Members (VisitTally);
+ */
+package HealthCentreMemberSystem;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+public class SqlMemberQueries {
+
+    /** Every column except the address, which is only needed on a few screens. */
+    static final String HOT_COLUMNS = "HCNumber, Forename, Surname, Gender, Age, Weight, BloodPressure, "
+        + "Systolic, Diastolic, VisitTally, FConsultation, ConsultationDue, Version";
+    private static final String COLUMNS = HOT_COLUMNS + ", Address";
+
+    /** Rows fetched per page. */
+    private final int pageSize = Integer.getInteger("hcms.sql.pageSize", 200);
+    /** Attached to every member read, so changes are saved like any other. */
+    private final MemberListener listener;
+    /** The database queried. */
+    private final DBConnector db;
+
+    /** An open connection with the statements already prepared on it. */
+    private static class Session {
+        final Connection conn;
+        final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        Session(Connection conn) {
+            this.conn = conn;
+        }
+    }
+
+    /** Reads member rows. */
+    public interface RowReader {
+        List<HCMember> read() throws SQLException;
+    }
+
+    /** Runs a read of member rows and updates the members it returns. */
+    public interface Overlay {
+        List<HCMember> apply(RowReader reader) throws SQLException;
+    }
+
+    private Session readSession;
+    private Session primarySession;
+    private volatile Overlay overlay;
+
+    /**
+     * Constructor.
+     * @param listener Attached to every HCMember read.
+     * @param db       The database queried.
+     */
+    public SqlMemberQueries(MemberListener listener, DBConnector db) {
+        this.listener = listener;
+        this.db = db;
+    }
+
+    /**
+     * Sets what every read of members goes through, e.g. to apply writes that
+     * are not in the database yet. Reports still pick their rows (and count
+     * them) by what the database holds.
+     */
+    public void setOverlay(Overlay overlay) {
+        this.overlay = overlay;
+    }
+
+    // =========================================================================
+    // Queries
+    // =========================================================================
+
+    /**
+     * Finds one member by primary key.
+     * @return The member, or null if not found or the database is unavailable.
+     */
+    public HCMember find(String hcNumber) {
+        try {
+            List<HCMember> found = query("SELECT " + COLUMNS + " FROM Members WHERE HCNumber = ?", hcNumber);
+            return found.isEmpty() ? null : found.get(0);
+        } catch (SQLException e) {
+            System.out.println("Error finding member: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** @return Every member, fetched lazily. */
+    public List<HCMember> all() {
+        return new PagedList("1 = 1");
+    }
+
+    /** @return Members of one gender, fetched lazily. */
+    public List<HCMember> byGender(char gender) {
+        return new PagedList("Gender = ?", String.valueOf(gender));
+    }
+
+    /** @return Members with High blood pressure, fetched lazily. */
+    public List<HCMember> highBloodPressure() {
+        return new PagedList("BloodPressure = ?", "High");
+    }
+
+    /** @return Members due a consultation, fetched lazily. */
+    public List<HCMember> dueForConsultation() {
+        return new PagedList("FConsultation = ?", false);
+    }
+
+    /** @return Members with fewer visits than the threshold, fetched lazily. */
+    public List<HCMember> lowVisits(int threshold) {
+        return new PagedList("VisitTally < ?", threshold);
+    }
+
+    /**
+     * Returns the K members with the highest value of a field, ties going to
+     * the lower HC Number (as MemberRanking does).
+     */
+    public List<HCMember> top(RankField field, int k) {
+        String sql = "SELECT " + COLUMNS + " FROM Members ORDER BY "
+            + OptimisticUpdater.columnOf(field.getField()) + " DESC, " + hcNumberOrder() + db.getDialect().first();
+        try {
+            return query(sql, k);
+        } catch (SQLException e) {
+            System.out.println("Error running report: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns the expression ordering rows by HC Number, numerically.
+     */
+    private String hcNumberOrder() {
+        return db.getDialect().toInteger("HCNumber");
+    }
+
+    /**
+     * Returns the number of members, or 0 if the database is unavailable.
+     */
+    public int count() {
+        return all().size();
+    }
+
+    /**
+     * Returns the highest HC Number in use, or 0 if there are none.
+     * @throws SQLException if the database is unavailable.
+     */
+    public synchronized int maxHcNumber() throws SQLException {
+        // From the primary: a number a lagging replica has not seen yet must not be handed out again
+        PreparedStatement pstmt = prepare(primarySession(), "SELECT MAX(" + db.getDialect().toInteger("HCNumber") + ") FROM Members");
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Runs a query returning members, through the overlay if there is one.
+     */
+    private List<HCMember> query(String sql, Object... params) throws SQLException {
+        Overlay o = overlay;
+        return o == null ? select(sql, params) : o.apply(() -> select(sql, params));
+    }
+
+    /**
+     * Runs a query returning members, on a cached statement.
+     */
+    private synchronized List<HCMember> select(String sql, Object... params) throws SQLException {
+        Session session = session();
+        try {
+            PreparedStatement pstmt = prepare(session, sql);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            List<HCMember> result = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    HCMember m = readMember(rs);
+                    m.setListener(listener);
+                    result.add(m);
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            discard(session);
+            throw e;
+        }
+    }
+
+    private synchronized int queryCount(String where, Object... params) throws SQLException {
+        Session session = session();
+        try {
+            PreparedStatement pstmt = prepare(session, "SELECT COUNT(*) FROM Members WHERE " + where);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            discard(session);
+            throw e;
+        }
+    }
+
+    /**
+     * Builds a member from a Members row.
+     */
+    static HCMember readMember(ResultSet rs) throws SQLException {
+        return readMember(rs, null);
+    }
+
+    /**
+     * Builds a member from a Members row.
+     * @param addressCache If not null, the row has no Address column and the
+     *                     address is left to be fetched through this cache.
+     */
+    static HCMember readMember(ResultSet rs, AddressCache addressCache) throws SQLException {
+        HCMember m = new HCMember(
+            rs.getString("HCNumber"),
+            rs.getString("Forename"),
+            rs.getString("Surname"),
+            rs.getString("Gender").charAt(0),
+            rs.getInt("Age"),
+            rs.getDouble("Weight"),
+            addressCache != null ? null : rs.getString("Address")
+        );
+        if (addressCache != null) {
+            m.leaveAddressUnloaded(addressCache);
+        }
+        m.setBloodPressure(rs.getString("BloodPressure"));
+        m.setReading(rs.getInt("Systolic"), rs.getInt("Diastolic"));
+        m.setVisitTally(rs.getInt("VisitTally"));
+        m.setFConsultation(rs.getBoolean("FConsultation"));
+        Date due = rs.getDate("ConsultationDue");
+        m.setConsultationDue(due != null ? due.toLocalDate() : null);
+        m.setVersion(rs.getLong("Version"));
+        return m;
+    }
+
+    // =========================================================================
+    // Connections And Statement Cache
+    // =========================================================================
+
+    /**
+     * Picks the connection to read on: the primary straight after this desk
+     * wrote (read-your-writes), otherwise the read connection.
+     */
+    private Session session() throws SQLException {
+        if (db.wroteRecently()) {
+            return primarySession();
+        }
+        if (readSession == null) {
+            readSession = new Session(db.getReadConnection());
+        }
+        return readSession;
+    }
+
+    private Session primarySession() throws SQLException {
+        if (primarySession == null) {
+            primarySession = new Session(db.getConnection());
+        }
+        return primarySession;
+    }
+
+    private static PreparedStatement prepare(Session session, String sql) throws SQLException {
+        PreparedStatement pstmt = session.statements.get(sql);
+        if (pstmt == null) {
+            pstmt = session.conn.prepareStatement(sql);
+            session.statements.put(sql, pstmt);
+        }
+        return pstmt;
+    }
+
+    /**
+     * Drops a session after an error, so the next query reconnects.
+     */
+    private void discard(Session session) {
+        if (session == readSession) readSession = null;
+        if (session == primarySession) primarySession = null;
+        try {
+            session.conn.close();
+        } catch (SQLException e) {
+            // Already broken
+        }
+    }
+
+    /**
+     * Closes the connections (and with them the cached statements).
+     */
+    public synchronized void close() {
+        if (readSession != null) discard(readSession);
+        if (primarySession != null) discard(primarySession);
+    }
+
+    // =========================================================================
+    // Lazy Results
+    // =========================================================================
+
+    /**
+     * A report result read from the database as it is used. Iterating walks
+     * the rows in (numeric) HC Number order one page at a time (keyset paging);
+     * get(i) fetches the page holding i. Rows changed while the list is being
+     * read may or may not be seen.
+     */
+    private class PagedList extends AbstractList<HCMember> {
+        private final String where;
+        private final Object[] params;
+        private int size = -1;
+        private int pageStart = -1;
+        private List<HCMember> page;
+
+        PagedList(String where, Object... params) {
+            this.where = where;
+            this.params = params;
+        }
+
+        @Override
+        public synchronized int size() {
+            if (size < 0) {
+                try {
+                    size = queryCount(where, params);
+                } catch (SQLException e) {
+                    System.out.println("Error running report: " + e.getMessage());
+                    return 0;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public synchronized HCMember get(int index) {
+            if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+            int start = index / pageSize * pageSize;
+            if (start != pageStart) {
+                page = fetch("SELECT " + COLUMNS + " FROM Members WHERE " + where
+                    + " ORDER BY " + hcNumberOrder() + db.getDialect().page(), start);
+                pageStart = start;
+            }
+            if (index - start >= page.size()) throw new IndexOutOfBoundsException(index);
+            return page.get(index - start);
+        }
+
+        @Override
+        public Iterator<HCMember> iterator() {
+            return new Iterator<HCMember>() {
+                private List<HCMember> current = new ArrayList<>();
+                private int position;
+                private int lastHc = -1;
+                private boolean exhausted;
+
+                @Override
+                public boolean hasNext() {
+                    if (position < current.size()) return true;
+                    if (exhausted) return false;
+                    current = fetch("SELECT " + COLUMNS + " FROM Members WHERE (" + where + ") AND "
+                        + hcNumberOrder() + " > ? ORDER BY " + hcNumberOrder() + db.getDialect().page(), lastHc, 0);
+                    position = 0;
+                    exhausted = current.size() < pageSize;
+                    return !current.isEmpty();
+                }
+
+                @Override
+                public HCMember next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    HCMember m = current.get(position++);
+                    lastHc = Integer.parseInt(m.getHCNumber().trim());
+                    return m;
+                }
+            };
+        }
+
+        /**
+         * Runs one page query: the filter parameters, then the extra ones, then the page size.
+         */
+        private List<HCMember> fetch(String sql, Object... extra) {
+            Object[] all = new Object[params.length + extra.length + 1];
+            System.arraycopy(params, 0, all, 0, params.length);
+            System.arraycopy(extra, 0, all, params.length, extra.length);
+            all[all.length - 1] = pageSize;
+            try {
+                return query(sql, all);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error reading members: " + e.getMessage(), e);
+            }
+        }
+    }
+}
\ No newline at end of file
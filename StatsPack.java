@@ -0,0 +1,144 @@
+/*
+ * StatsPack.java
+ * The results of every stats report, produced together in a single pass
+ * over the members (see MemberManager.runAllReports).
+ */
+package HealthCentreMemberSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+public class StatsPack {
+
+    private final int visitThreshold;
+    private final List<HCMember> males;
+    private final List<HCMember> females;
+    private final List<HCMember> highBloodPressure;
+    private final List<HCMember> dueConsultation;
+    private final List<HCMember> lowVisits;
+    private int total;
+
+    /**
+     * Constructor.
+     * @param visitThreshold Members with fewer visits than this count as low visit.
+     */
+    public StatsPack(int visitThreshold) {
+        this(visitThreshold, 0, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+            new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * Builds a pack from results worked out elsewhere (e.g. by SQL queries).
+     */
+    StatsPack(int visitThreshold, int total, List<HCMember> males, List<HCMember> females,
+              List<HCMember> highBloodPressure, List<HCMember> dueConsultation, List<HCMember> lowVisits) {
+        this.visitThreshold = visitThreshold;
+        this.total = total;
+        this.males = males;
+        this.females = females;
+        this.highBloodPressure = highBloodPressure;
+        this.dueConsultation = dueConsultation;
+        this.lowVisits = lowVisits;
+    }
+
+    /**
+     * Evaluates every report predicate against one member.
+     */
+    private void accept(HCMember m) {
+        total++;
+        char gender = m.getGender();
+        if (gender == 'M') {
+            males.add(m);
+        } else if (gender == 'F') {
+            females.add(m);
+        }
+        if ("High".equalsIgnoreCase(m.getBloodPressure())) {
+            highBloodPressure.add(m);
+        }
+        if (!m.isFConsultation()) {
+            dueConsultation.add(m);
+        }
+        if (m.getVisitTally() < visitThreshold) {
+            lowVisits.add(m);
+        }
+    }
+
+    /**
+     * Appends the results of the following slice of members.
+     */
+    private void merge(StatsPack next) {
+        total += next.total;
+        males.addAll(next.males);
+        females.addAll(next.females);
+        highBloodPressure.addAll(next.highBloodPressure);
+        dueConsultation.addAll(next.dueConsultation);
+        lowVisits.addAll(next.lowVisits);
+    }
+
+    // =========================================================================
+    // Fork-Join Pass
+    // =========================================================================
+
+    /**
+     * Builds the pack for a slice of the member list, splitting large slices
+     * in half so the work spreads across every core. Results keep list order.
+     */
+    static class Task extends RecursiveTask<StatsPack> {
+        private static final long serialVersionUID = 1L;
+
+        /** Slices smaller than this are scanned directly. */
+        private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+        private final List<HCMember> members;
+        private final int from;
+        private final int to;
+        private final int visitThreshold;
+
+        Task(List<HCMember> members, int from, int to, int visitThreshold) {
+            this.members = members;
+            this.from = from;
+            this.to = to;
+            this.visitThreshold = visitThreshold;
+        }
+
+        @Override
+        protected StatsPack compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                StatsPack pack = new StatsPack(visitThreshold);
+                for (int i = from; i < to; i++) {
+                    pack.accept(members.get(i));
+                }
+                return pack;
+            }
+            int mid = (from + to) >>> 1;
+            Task left = new Task(members, from, mid, visitThreshold);
+            Task right = new Task(members, mid, to, visitThreshold);
+            left.fork();
+            StatsPack rightPack = right.compute();
+            StatsPack pack = left.join();
+            pack.merge(rightPack);
+            return pack;
+        }
+    }
+
+    // =========================================================================
+    // Getters
+    // =========================================================================
+
+    public int getVisitThreshold() { return visitThreshold; }
+    public int getTotal() { return total; }
+    public List<HCMember> getMales() { return males; }
+    public List<HCMember> getFemales() { return females; }
+    public List<HCMember> getHighBloodPressure() { return highBloodPressure; }
+    public List<HCMember> getDueConsultation() { return dueConsultation; }
+    public List<HCMember> getLowVisits() { return lowVisits; }
+
+    /**
+     * Returns the members of one gender.
+     * @param gender 'M' or 'F'.
+     */
+    public List<HCMember> getByGender(char gender) {
+        return gender == 'M' ? males : females;
+    }
+}
\ No newline at end of file
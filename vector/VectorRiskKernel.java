@@ -0,0 +1,45 @@
+/*
+ * VectorRiskKernel.java
+ * Scores as many members per instruction as the CPU's vector registers hold
+ * (e.g. 8 with AVX2, 16 with AVX-512), using the JDK Vector API.
+ *
+ * The Vector API is an incubator module, so this file is kept out of the
+ * main source folder and built separately (see README); RiskScoring loads it
+ * by name and falls back to the scalar kernel when it is not there.
+ */
+package HealthCentreMemberSystem;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorRiskKernel implements RiskKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void score(MemberColumns c, float[] out, int from, int to) {
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector category = FloatVector.fromArray(SPECIES, c.bpCategory, i);
+            FloatVector s = FloatVector.zero(SPECIES)
+                .blend(HIGH_BP_POINTS, category.compare(VectorOperators.EQ, MemberColumns.BP_HIGH))
+                .blend(LOW_BP_POINTS, category.compare(VectorOperators.EQ, MemberColumns.BP_LOW));
+            // Same order of operations as the scalar kernel, so the scores match exactly
+            s = s.add(FloatVector.fromArray(SPECIES, c.age, i).sub(AGE_FROM).max(0f).mul(AGE_POINTS));
+            s = s.add(FloatVector.fromArray(SPECIES, c.weight, i).sub(WEIGHT_FROM).max(0f).mul(WEIGHT_POINTS));
+            s = s.add(FloatVector.fromArray(SPECIES, c.systolic, i).sub(SYSTOLIC_FROM).max(0f).mul(SYSTOLIC_POINTS));
+            s = s.add(FloatVector.fromArray(SPECIES, c.diastolic, i).sub(DIASTOLIC_FROM).max(0f).mul(DIASTOLIC_POINTS));
+            s = s.add(FloatVector.broadcast(SPECIES, VISITS_EXPECTED)
+                .sub(FloatVector.fromArray(SPECIES, c.visits, i)).max(0f).mul(VISIT_POINTS));
+            s.min(MAX_SCORE).intoArray(out, i);
+        }
+        ScalarRiskKernel.scoreRange(c, out, i, to);
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}
\ No newline at end of file